@@ -2,8 +2,10 @@ package com.erfan.cch;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CchApplication {
 
 	public static void main(String[] args) {
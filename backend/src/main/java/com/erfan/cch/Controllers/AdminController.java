@@ -5,6 +5,7 @@ import com.erfan.cch.Enums.Status;
 import com.erfan.cch.Models.*;
 import com.erfan.cch.Services.AdminService;
 import com.erfan.cch.Services.PdfExportService;
+import com.erfan.cch.Services.VisitProposalService;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -18,6 +19,7 @@ import org.springframework.web.bind.annotation.*;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -27,10 +29,13 @@ public class AdminController {
 
     private final AdminService adminService;
     private final PdfExportService pdfExportService;
+    private final VisitProposalService visitProposalService;
 
-    public AdminController(AdminService adminService, PdfExportService pdfExportService) {
+    public AdminController(AdminService adminService, PdfExportService pdfExportService,
+            VisitProposalService visitProposalService) {
         this.adminService = adminService;
         this.pdfExportService = pdfExportService;
+        this.visitProposalService = visitProposalService;
     }
 
     // ───── Procedure ─────
@@ -48,11 +53,25 @@ public class AdminController {
     // ───── Volunteer Visit Assignment ─────
     @PostMapping("/assign-volunteer")
     public ResponseEntity<String> assignVolunteer(@RequestBody VisitDateDto visitDateDto) {
-        adminService.assignVolunteerToPatients(
+        List<LocalDate> visitDates = new ArrayList<>();
+        if (visitDateDto.getVisitDate() != null) {
+            visitDates.add(visitDateDto.getVisitDate());
+        }
+        if (visitDateDto.getVisitDates() != null) {
+            visitDates.addAll(visitDateDto.getVisitDates());
+        }
+        AssignmentResultDto result = adminService.assignVolunteerToPatients(
                 visitDateDto.getVolunteerId(),
                 visitDateDto.getPatientIds(), // ✅ list of patient IDs
-                visitDateDto.getVisitDate());
-        return ResponseEntity.ok("Volunteer assigned successfully to patients");
+                visitDates);
+        return ResponseEntity.ok("Volunteer assigned successfully to patients: " + result.getCreated()
+                + " visits created, " + result.getSkipped() + " already assigned and skipped");
+    }
+
+    @GetMapping("/visit-proposals")
+    public ResponseEntity<List<VisitProposalDto>> proposeVolunteers(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(visitProposalService.proposeForDate(date));
     }
 
     @GetMapping("list-volunteers")
@@ -66,6 +85,15 @@ public class AdminController {
         return ResponseEntity.ok(volunteers);
     }
 
+    // Keyset variant: pass back nextCursor for the following page; no total count is computed
+    @GetMapping("list-volunteers/cursor")
+    public ResponseEntity<CursorSliceDto<VolunteerDto>> getVolunteersAfter(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "") String search) {
+        return ResponseEntity.ok(adminService.getVolunteersAfter(search, cursor, size));
+    }
+
     @GetMapping("/consumable/list")
     public Page<Consumable> listConsumables(@RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "6") int size,
@@ -88,6 +116,47 @@ public class AdminController {
         return ResponseEntity.ok(patients);
     }
 
+    @GetMapping("list-patients/cursor")
+    public ResponseEntity<CursorSliceDto<PatientDto>> getPatientsAfter(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "") String search,
+            @RequestParam(defaultValue = "false") boolean aliveOnly) {
+        return ResponseEntity.ok(adminService.getPatientsAfter(search, aliveOnly, cursor, size));
+    }
+
+    @GetMapping("/patient-map")
+    public ResponseEntity<List<MapMarkerDto>> getPatientMap(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon,
+            @RequestParam int zoom) {
+        return ResponseEntity.ok(adminService.getPatientMap(minLat, minLon, maxLat, maxLon, zoom));
+    }
+
+    @GetMapping("/patient-registrations")
+    public ResponseEntity<RegistrationSeriesDto> getPatientRegistrations(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        return ResponseEntity.ok(adminService.getRegistrationSeries(startDate, endDate));
+    }
+
+    @GetMapping("/procedure-frequency")
+    public ResponseEntity<List<ProcedureFrequencyDto>> getProcedureFrequency(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "false") boolean monthly,
+            @RequestParam(defaultValue = "false") boolean perVolunteer) {
+        return ResponseEntity.ok(adminService.getProcedureFrequency(startDate, endDate, monthly, perVolunteer));
+    }
+
+    @PostMapping("/procedure-frequency/rebuild")
+    public ResponseEntity<String> rebuildProcedureFrequency() {
+        int rows = adminService.rebuildProcedureFrequency();
+        return ResponseEntity.ok("Procedure frequency rebuilt with " + rows + " daily rows");
+    }
+
     @GetMapping("/visits")
     public ResponseEntity<VisitPageResponseDTO> getVisits(
             @RequestParam(required = false) Status status,
@@ -106,6 +175,16 @@ public class AdminController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/visits/cursor")
+    public ResponseEntity<CursorSliceDto<PatientVisitReportDto>> getVisitsBefore(
+            @RequestParam(required = false) Status status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(adminService.getVisitsBefore(status, startDate, endDate, cursor, size));
+    }
+
     @GetMapping("/view-equipments")
     public ResponseEntity<Page<EquipmentDto>> viewEquipments(
             @RequestParam(defaultValue = "0") int page,
@@ -299,6 +378,12 @@ public class AdminController {
         return ResponseEntity.ok(adminService.getConsumableUsageSummary(startDate, endDate));
     }
 
+    @PostMapping("/consumable/usage-summary/rebuild")
+    public ResponseEntity<String> rebuildConsumableUsageSummary() {
+        int rows = adminService.rebuildConsumableUsageSummary();
+        return ResponseEntity.ok("Usage summary rebuilt with " + rows + " daily rows");
+    }
+
     private String escapeCsv(String value) {
         if (value == null)
             return "";
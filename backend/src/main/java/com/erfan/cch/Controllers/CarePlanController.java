@@ -0,0 +1,44 @@
+package com.erfan.cch.Controllers;
+
+import com.erfan.cch.Dto.CarePlanDto;
+import com.erfan.cch.Dto.CarePlanRequest;
+import com.erfan.cch.Services.CarePlanService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/care-plans")
+@PreAuthorize("hasAuthority('ADMIN')")
+public class CarePlanController {
+
+    private final CarePlanService carePlanService;
+
+    public CarePlanController(CarePlanService carePlanService) {
+        this.carePlanService = carePlanService;
+    }
+
+    @PostMapping
+    public ResponseEntity<CarePlanDto> createPlan(@RequestBody CarePlanRequest request) {
+        return ResponseEntity.ok(carePlanService.createPlan(request));
+    }
+
+    @GetMapping
+    public ResponseEntity<List<CarePlanDto>> getPlans() {
+        return ResponseEntity.ok(carePlanService.getPlans());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<String> deactivatePlan(@PathVariable Long id) {
+        carePlanService.deactivatePlan(id);
+        return ResponseEntity.ok("Care plan deactivated");
+    }
+
+    @PostMapping("/materialize")
+    public ResponseEntity<String> materialize() {
+        int created = carePlanService.materializeAll();
+        return ResponseEntity.ok(created + " visits scheduled");
+    }
+}
@@ -0,0 +1,45 @@
+package com.erfan.cch.Controllers;
+
+import com.erfan.cch.Dto.CacheStatsDto;
+import com.erfan.cch.Dto.ExecutorStatsDto;
+import com.erfan.cch.Security.BoundedPasswordEncoder;
+import com.erfan.cch.Security.UserDetailsCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/metrics")
+@PreAuthorize("hasAuthority('ADMIN')")
+public class MetricsController {
+
+    private final UserDetailsCache userDetailsCache;
+    private final BoundedPasswordEncoder passwordEncoder;
+
+    public MetricsController(UserDetailsCache userDetailsCache, BoundedPasswordEncoder passwordEncoder) {
+        this.userDetailsCache = userDetailsCache;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    @GetMapping("/user-cache")
+    public ResponseEntity<CacheStatsDto> userCacheStats() {
+        return ResponseEntity.ok(new CacheStatsDto(
+                userDetailsCache.getHits(),
+                userDetailsCache.getMisses(),
+                userDetailsCache.getEvictions(),
+                userDetailsCache.getSize()));
+    }
+
+    @GetMapping("/password-hashing")
+    public ResponseEntity<ExecutorStatsDto> passwordHashingStats() {
+        return ResponseEntity.ok(new ExecutorStatsDto(
+                passwordEncoder.getActiveCount(),
+                passwordEncoder.getPoolSize(),
+                passwordEncoder.getQueueDepth(),
+                passwordEncoder.getQueueCapacity(),
+                passwordEncoder.getCompletedCount(),
+                passwordEncoder.getRejectedCount()));
+    }
+}
@@ -1,13 +1,17 @@
 package com.erfan.cch.Controllers;
 
+import com.erfan.cch.Dto.CursorSliceDto;
 import com.erfan.cch.Dto.PatientVisitReportDto;
 import com.erfan.cch.Dto.ProcedureDoneDto;
 import com.erfan.cch.Dto.VisitReportRequest;
+import com.erfan.cch.Dto.VisitReportResultDto;
 import com.erfan.cch.Dto.VolunteerDashboardStatsDto;
+import com.erfan.cch.Dto.VolunteerSyncDto;
 import com.erfan.cch.Enums.Status;
 import com.erfan.cch.Models.Consumable;
 import com.erfan.cch.Models.PatientVisitReport;
 import com.erfan.cch.Services.VolunteerService;
+import com.erfan.cch.Services.VolunteerSyncService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -22,22 +26,32 @@ import java.util.Map;
 public class VolunteerController {
 
     private final VolunteerService volunteerService;
+    private final VolunteerSyncService volunteerSyncService;
 
-    public VolunteerController(VolunteerService volunteerService) {
+    public VolunteerController(VolunteerService volunteerService, VolunteerSyncService volunteerSyncService) {
         this.volunteerService = volunteerService;
+        this.volunteerSyncService = volunteerSyncService;
     }
 
     @PostMapping("/submit-report")
-    public ResponseEntity<String> submitReport(@RequestBody VisitReportRequest reportRequest) {
-        volunteerService.submitVisitReport(
+    public ResponseEntity<String> submitReport(@RequestBody VisitReportRequest reportRequest,
+                                               @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        String result = volunteerService.submitVisitReport(
+                idempotencyKey,
                 reportRequest.getVisitId(),
                 reportRequest.getProcedureIds(),
                 reportRequest.getConsumables(),
                 reportRequest.getStatus(),
                 reportRequest.getNotes()
         );
-        return ResponseEntity.ok("Visit report submitted successfully");
+        return ResponseEntity.ok(result);
     }
+
+    @PostMapping("/submit-reports")
+    public ResponseEntity<List<VisitReportResultDto>> submitReports(@RequestBody List<VisitReportRequest> reportRequests) {
+        return ResponseEntity.ok(volunteerService.submitVisitReports(reportRequests));
+    }
+
     @GetMapping("/consumables")
     public ResponseEntity<List<Consumable>> getAllConsumables(){
         return ResponseEntity.ok(volunteerService.getAllConsumables());
@@ -45,7 +59,13 @@ public class VolunteerController {
 
 
     @GetMapping("/assigned-visits")
-    public ResponseEntity<List<PatientVisitReportDto>> getTodaysAssignedVisits() {
+    public ResponseEntity<List<PatientVisitReportDto>> getTodaysAssignedVisits(
+            @RequestParam(defaultValue = "false") boolean optimized,
+            @RequestParam(required = false) Double startLat,
+            @RequestParam(required = false) Double startLon) {
+        if (optimized) {
+            return ResponseEntity.ok(volunteerService.getTodaysRoute(startLat, startLon));
+        }
         return ResponseEntity.ok(volunteerService.getTodaysAssignedVisits());
     }
     @GetMapping("/completed-visits")
@@ -56,10 +76,20 @@ public class VolunteerController {
     ) {
         return ResponseEntity.ok(volunteerService.getCompletedAndCancelledVisits(page, size));
     }
+    @GetMapping("/completed-visits/cursor")
+    public ResponseEntity<CursorSliceDto<PatientVisitReportDto>> getCompletedVisitsBefore(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(volunteerService.getCompletedAndCancelledVisitsBefore(cursor, size));
+    }
     @GetMapping("/procedures")
     public ResponseEntity<List<ProcedureDoneDto>> getAllProcedures() {
         return ResponseEntity.ok(volunteerService.getAllProcedures());
     }
+    @GetMapping("/sync")
+    public ResponseEntity<VolunteerSyncDto> sync(@RequestParam(required = false) String cursor) {
+        return ResponseEntity.ok(volunteerSyncService.changesSince(cursor));
+    }
     @GetMapping("/dashboard")
     public ResponseEntity<VolunteerDashboardStatsDto> getDashboardStats() {
         return ResponseEntity.ok(volunteerService
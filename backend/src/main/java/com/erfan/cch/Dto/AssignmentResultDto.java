@@ -0,0 +1,13 @@
+package com.erfan.cch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class AssignmentResultDto {
+    // Pending visits created by this request
+    private int created;
+    // (patient, date) pairs the volunteer already had a visit for
+    private int skipped;
+}
@@ -0,0 +1,28 @@
+package com.erfan.cch.Dto;
+
+import com.erfan.cch.Enums.RecurrenceType;
+import com.erfan.cch.Enums.Status;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Set;
+
+@Data
+@AllArgsConstructor
+public class CarePlanDto {
+    private Long id;
+    private Long patientId;
+    private String patientName;
+    private Long volunteerId;
+    private String volunteerName;
+    private String specialization;
+    private RecurrenceType recurrence;
+    private Set<DayOfWeek> daysOfWeek;
+    private Integer intervalDays;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private LocalDate materializedThrough;
+    private Status status;
+}
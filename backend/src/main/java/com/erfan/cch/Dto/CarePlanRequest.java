@@ -0,0 +1,21 @@
+package com.erfan.cch.Dto;
+
+import com.erfan.cch.Enums.RecurrenceType;
+import lombok.Data;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Set;
+
+@Data
+public class CarePlanRequest {
+    private Long patientId;
+    // Either a fixed volunteer or a specialization to pick one from on each date
+    private Long volunteerId;
+    private String specialization;
+    private RecurrenceType recurrence;
+    private Set<DayOfWeek> daysOfWeek;   // WEEKLY, e.g. [TUESDAY]
+    private Integer intervalDays;        // EVERY_N_DAYS, e.g. 3
+    private LocalDate startDate;
+    private LocalDate endDate;
+}
@@ -0,0 +1,17 @@
+package com.erfan.cch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One keyset page. There is no total count; {@code nextCursor} is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+public class CursorSliceDto<T> {
+    private List<T> content;
+    private boolean hasNext;
+    private String nextCursor;
+}
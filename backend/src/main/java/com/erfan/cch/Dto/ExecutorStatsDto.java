@@ -0,0 +1,15 @@
+package com.erfan.cch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ExecutorStatsDto {
+    private int activeThreads;
+    private int poolSize;
+    private int queueDepth;
+    private int queueCapacity;
+    private long completed;
+    private long rejected;
+}
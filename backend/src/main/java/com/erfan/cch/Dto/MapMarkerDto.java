@@ -0,0 +1,15 @@
+package com.erfan.cch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MapMarkerDto {
+    private double latitude;
+    private double longitude;
+    // 1 for a single patient, otherwise the size of the cluster
+    private int count;
+    // Only set for single-patient markers
+    private Long patientId;
+}
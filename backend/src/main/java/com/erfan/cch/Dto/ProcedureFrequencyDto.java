@@ -0,0 +1,21 @@
+package com.erfan.cch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * How many completed visits included a procedure. The month and volunteer fields are only
+ * set when the report is broken down that way.
+ */
+@Data
+@AllArgsConstructor
+public class ProcedureFrequencyDto {
+    private LocalDate month;
+    private Long volunteerId;
+    private String volunteerName;
+    private Long procedureId;
+    private String procedureName;
+    private long visits;
+}
@@ -0,0 +1,14 @@
+package com.erfan.cch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+public class RegistrationBucketDto {
+    private LocalDate periodStart;
+    private LocalDate periodEnd;
+    private long newPatients;
+}
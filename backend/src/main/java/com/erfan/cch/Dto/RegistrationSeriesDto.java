@@ -0,0 +1,14 @@
+package com.erfan.cch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class RegistrationSeriesDto {
+    // Monday-based weeks and calendar months overlapping the requested range
+    private List<RegistrationBucketDto> weekly;
+    private List<RegistrationBucketDto> monthly;
+}
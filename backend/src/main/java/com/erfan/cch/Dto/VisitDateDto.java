@@ -7,6 +7,8 @@ import java.util.List;
 
 public class VisitDateDto {
     LocalDate visitDate;
+    // Optional: assign several days (e.g. a week) in one request
+    List<LocalDate> visitDates;
     List<Long> patientIds;
     Long volunteerId;
 
@@ -17,6 +19,13 @@ public class VisitDateDto {
     public void setVisitDate(LocalDate visitDate) {
         this.visitDate = visitDate;
     }
+    public List<LocalDate> getVisitDates() {
+        return visitDates;
+    }
+
+    public void setVisitDates(List<LocalDate> visitDates) {
+        this.visitDates = visitDates;
+    }
     public List<Long> getPatientIds() {
         return patientIds;
     }
@@ -0,0 +1,19 @@
+package com.erfan.cch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class VisitProposalDto {
+    private Long visitId;
+    private Long patientId;
+    private String patientName;
+    private Long currentVolunteerId;
+    private Long proposedVolunteerId;
+    private String proposedVolunteerName;
+    // Distance to the proposed volunteer's closest other stop that day; null if they have none nearby
+    private Double distanceKm;
+    // Visits the proposed volunteer would have that day, this one included
+    private int dailyLoad;
+}
@@ -0,0 +1,12 @@
+package com.erfan.cch.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class VisitReportResultDto {
+    private Long visitId;
+    private boolean submitted;
+    private String message;
+}
@@ -0,0 +1,20 @@
+package com.erfan.cch.Dto;
+
+import com.erfan.cch.Models.Consumable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class VolunteerSyncDto {
+    private List<ProcedureDoneDto> procedures;
+    private List<Long> removedProcedureIds;
+    private List<Consumable> consumables;
+    private List<Long> removedConsumableIds;
+    private List<PatientVisitReportDto> visits;
+    private List<Long> removedVisitIds;
+    // Pass back as ?cursor= on the next call
+    private String cursor;
+}
@@ -0,0 +1,6 @@
+package com.erfan.cch.Enums;
+
+public enum RecurrenceType {
+    WEEKLY,
+    EVERY_N_DAYS
+}
@@ -0,0 +1,108 @@
+package com.erfan.cch.Models;
+
+import com.erfan.cch.Enums.RecurrenceType;
+import com.erfan.cch.Enums.Status;
+import jakarta.persistence.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A recurring visit schedule for one patient. Visits go either to a fixed volunteer or to
+ * the least busy active volunteer with the given specialization on each date.
+ */
+@Entity
+public class CarePlan {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "patient_id")
+    private Patient patient;
+
+    @ManyToOne
+    @JoinColumn(name = "volunteer_id")
+    private Volunteer volunteer;
+
+    private String specialization;
+
+    @Enumerated(EnumType.STRING)
+    private RecurrenceType recurrence;
+
+    // WEEKLY: bit (dayOfWeek - 1) set for every day the patient is visited
+    private int weekdayMask;
+
+    // EVERY_N_DAYS: visits fall on startDate, startDate + n, startDate + 2n, ...
+    private Integer intervalDays;
+
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    // Last date already turned into visits; the scheduler continues from the day after
+    private LocalDate materializedThrough;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    public CarePlan() {}
+
+    public boolean occursOn(LocalDate date) {
+        if (date.isBefore(startDate) || (endDate != null && date.isAfter(endDate))) {
+            return false;
+        }
+        if (recurrence == RecurrenceType.WEEKLY) {
+            return (weekdayMask & (1 << (date.getDayOfWeek().getValue() - 1))) != 0;
+        }
+        return (date.toEpochDay() - startDate.toEpochDay()) % intervalDays == 0;
+    }
+
+    public Set<DayOfWeek> getDaysOfWeek() {
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if ((weekdayMask & (1 << (day.getValue() - 1))) != 0) {
+                days.add(day);
+            }
+        }
+        return days;
+    }
+
+    public void setDaysOfWeek(Set<DayOfWeek> days) {
+        int mask = 0;
+        for (DayOfWeek day : days) {
+            mask |= 1 << (day.getValue() - 1);
+        }
+        this.weekdayMask = mask;
+    }
+
+    public Long getId() { return id; }
+
+    public Patient getPatient() { return patient; }
+    public void setPatient(Patient patient) { this.patient = patient; }
+
+    public Volunteer getVolunteer() { return volunteer; }
+    public void setVolunteer(Volunteer volunteer) { this.volunteer = volunteer; }
+
+    public String getSpecialization() { return specialization; }
+    public void setSpecialization(String specialization) { this.specialization = specialization; }
+
+    public RecurrenceType getRecurrence() { return recurrence; }
+    public void setRecurrence(RecurrenceType recurrence) { this.recurrence = recurrence; }
+
+    public Integer getIntervalDays() { return intervalDays; }
+    public void setIntervalDays(Integer intervalDays) { this.intervalDays = intervalDays; }
+
+    public LocalDate getStartDate() { return startDate; }
+    public void setStartDate(LocalDate startDate) { this.startDate = startDate; }
+
+    public LocalDate getEndDate() { return endDate; }
+    public void setEndDate(LocalDate endDate) { this.endDate = endDate; }
+
+    public LocalDate getMaterializedThrough() { return materializedThrough; }
+    public void setMaterializedThrough(LocalDate materializedThrough) { this.materializedThrough = materializedThrough; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+}
@@ -2,8 +2,12 @@ package com.erfan.cch.Models;
 
 import com.erfan.cch.Enums.Status;
 import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
 @Entity
+@Table(indexes = @Index(name = "idx_consumable_updated_at", columnList = "updated_at"))
 public class Consumable {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -17,6 +21,10 @@ public class Consumable {
     @Enumerated(EnumType.STRING)
     private Status status;        // ACTIVE, INACTIVE
 
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     public Consumable() {}
 
     public Consumable(String name, String category, Integer stockQuantity, String unit, Status status) {
@@ -44,4 +52,6 @@ public class Consumable {
 
     public Status getStatus() { return status; }
     public void setStatus(Status status) { this.status = status; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
 }
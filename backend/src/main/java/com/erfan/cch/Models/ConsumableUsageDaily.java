@@ -0,0 +1,43 @@
+package com.erfan.cch.Models;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+
+/**
+ * Units of a consumable used on completed visits, per completion day. Written with JDBC
+ * upserts when reports are submitted; the unique (day, consumable) key is what the upsert
+ * lands on.
+ */
+@Entity
+@Table(name = "consumable_usage_daily",
+        uniqueConstraints = @UniqueConstraint(name = "uk_consumable_usage_daily_day_consumable",
+                columnNames = {"usage_date", "consumable_id"}))
+public class ConsumableUsageDaily {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "usage_date", nullable = false)
+    private LocalDate usageDate;
+
+    @ManyToOne
+    @JoinColumn(name = "consumable_id", nullable = false)
+    private Consumable consumable;
+
+    @Column(nullable = false)
+    private Long quantityUsed;
+
+    public ConsumableUsageDaily() {}
+
+    public Long getId() { return id; }
+
+    public LocalDate getUsageDate() { return usageDate; }
+    public void setUsageDate(LocalDate usageDate) { this.usageDate = usageDate; }
+
+    public Consumable getConsumable() { return consumable; }
+    public void setConsumable(Consumable consumable) { this.consumable = consumable; }
+
+    public Long getQuantityUsed() { return quantityUsed; }
+    public void setQuantityUsed(Long quantityUsed) { this.quantityUsed = quantityUsed; }
+}
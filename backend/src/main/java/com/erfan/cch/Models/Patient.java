@@ -6,7 +6,9 @@ import com.erfan.cch.Enums.Status;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -15,7 +17,10 @@ import java.util.List;
         name = "patient",
         indexes = {
                 @Index(name = "idx_patient_name", columnList = "name"),
-                @Index(name = "idx_patient_status", columnList = "status")
+                @Index(name = "idx_patient_status", columnList = "status"),
+                @Index(name = "idx_patient_date", columnList = "date"),
+                @Index(name = "idx_patient_status_id", columnList = "status, id"),
+                @Index(name = "idx_patient_status_alive_id", columnList = "status, alivestatus, id")
         }
 )
 public class Patient {
@@ -35,6 +40,11 @@ public class Patient {
     private AliveStatus alivestatus;
     private LocalDate date;
 
+    // Bumped on every insert and update: synced visits carry the patient's name and location
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     @OneToMany(mappedBy = "patient")
     private List<PatientVisitReport> visitReports;
 
@@ -163,5 +173,9 @@ public class Patient {
     public void setDate(LocalDate date) {
         this.date = date;
     }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
 }
 
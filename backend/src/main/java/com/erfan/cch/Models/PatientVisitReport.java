@@ -1,15 +1,34 @@
 package com.erfan.cch.Models;
 
 import com.erfan.cch.Enums.Status;
+import com.erfan.cch.utils.VisitCodeGenerator;
 import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_patient_visit_report_updated_at", columnList = "updated_at"),
+        @Index(name = "idx_patient_visit_report_volunteer_date", columnList = "volunteer_id, visit_date"),
+        @Index(name = "idx_patient_visit_report_volunteer_status", columnList = "volunteer_id, status"),
+        // Keyset listings seek on (visit_date, id), optionally behind the status filter
+        @Index(name = "idx_patient_visit_report_date_id", columnList = "visit_date, id"),
+        @Index(name = "idx_patient_visit_report_status_date_id", columnList = "status, visit_date, id")
+})
 public class PatientVisitReport {
 
+    public static final String ID_GENERATOR_TABLE = "id_generator";
+    public static final String ID_GENERATOR_KEY = "patient_visit_report";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled ids instead of IDENTITY so Hibernate can batch inserts when visits are assigned in bulk
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "visit_id")
+    @TableGenerator(name = "visit_id", table = ID_GENERATOR_TABLE, pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = ID_GENERATOR_KEY, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(unique = true, updatable = false)
@@ -23,6 +42,7 @@ public class PatientVisitReport {
     @JoinColumn(name = "patient_id")
     private Patient patient;
 
+    @Column(name = "visit_date")
     private LocalDate visitDate;
     private LocalDate completedDate;
 
@@ -37,6 +57,11 @@ public class PatientVisitReport {
     private String notes;
     private String submittedBy;
 
+    // Bumped on every insert and update so the volunteer app can sync only what changed
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     public String getSubmittedBy() {
         return submittedBy;
     }
@@ -59,10 +84,7 @@ public class PatientVisitReport {
     @PrePersist
     public void generateVisitCode() {
         if (this.visitCode == null) {
-            String prefix = "VIS";
-            String datePart = LocalDate.now().toString().replace("-", ""); // YYYYMMDD
-            String randomPart = String.format("%05d", (int) (Math.random() * 100000));
-            this.visitCode = prefix + "-" + datePart + "-" + randomPart;
+            this.visitCode = VisitCodeGenerator.shared().next();
         }
     }
 
@@ -127,6 +149,10 @@ public class PatientVisitReport {
         this.consumablesUsed = consumablesUsed;
     }
 
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
     public Status getStatus() {
         return status;
     }
@@ -3,10 +3,13 @@ package com.erfan.cch.Models;
 
 import com.erfan.cch.Enums.Status;
 import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_procedure_done_updated_at", columnList = "updated_at"))
 public class ProcedureDone {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -19,6 +22,10 @@ public class ProcedureDone {
 
     private Status status;
 
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     public Status getStatus() {
         return status;
     }
@@ -49,5 +56,9 @@ public class ProcedureDone {
         this.visits = visits;
     }
 
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
 }
 
@@ -0,0 +1,51 @@
+package com.erfan.cch.Models;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+
+/**
+ * Completed visits that included a procedure, per completion day and volunteer. Maintained
+ * with JDBC upserts on report submission, like {@link ConsumableUsageDaily}.
+ */
+@Entity
+@Table(name = "procedure_usage_daily",
+        uniqueConstraints = @UniqueConstraint(name = "uk_procedure_usage_daily_day_procedure_volunteer",
+                columnNames = {"usage_date", "procedure_id", "volunteer_id"}))
+public class ProcedureUsageDaily {
+    // Stands in for visits without a volunteer; a NULL would let the unique key hold duplicates
+    public static final long NO_VOLUNTEER = 0L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "usage_date", nullable = false)
+    private LocalDate usageDate;
+
+    @ManyToOne
+    @JoinColumn(name = "procedure_id", nullable = false)
+    private ProcedureDone procedure;
+
+    @Column(name = "volunteer_id", nullable = false)
+    private Long volunteerId;
+
+    @Column(nullable = false)
+    private Long visitCount;
+
+    public ProcedureUsageDaily() {}
+
+    public Long getId() { return id; }
+
+    public LocalDate getUsageDate() { return usageDate; }
+    public void setUsageDate(LocalDate usageDate) { this.usageDate = usageDate; }
+
+    public ProcedureDone getProcedure() { return procedure; }
+    public void setProcedure(ProcedureDone procedure) { this.procedure = procedure; }
+
+    public Long getVolunteerId() { return volunteerId; }
+    public void setVolunteerId(Long volunteerId) { this.volunteerId = volunteerId; }
+
+    public Long getVisitCount() { return visitCount; }
+    public void setVisitCount(Long visitCount) { this.visitCount = visitCount; }
+}
@@ -9,12 +9,13 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_role_status_id", columnList = "role, status, id"))
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "role", discriminatorType = DiscriminatorType.STRING)
 public class User implements UserDetails {
@@ -31,6 +32,9 @@ public class User implements UserDetails {
 
     private Status status;
 
+    // Tokens issued at or before this instant are rejected (set when the user is deactivated)
+    private Instant tokensValidAfter;
+
     public Status getStatus() {
         return status;
     }
@@ -39,6 +43,14 @@ public class User implements UserDetails {
         this.status = status;
     }
 
+    public Instant getTokensValidAfter() {
+        return tokensValidAfter;
+    }
+
+    public void setTokensValidAfter(Instant tokensValidAfter) {
+        this.tokensValidAfter = tokensValidAfter;
+    }
+
     public UserType getUserType() {
         return userType;
     }
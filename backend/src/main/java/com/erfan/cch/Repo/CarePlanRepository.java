@@ -0,0 +1,33 @@
+package com.erfan.cch.Repo;
+
+import com.erfan.cch.Enums.AliveStatus;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.CarePlan;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface CarePlanRepository extends JpaRepository<CarePlan, Long> {
+    List<CarePlan> findAllByStatus(Status status);
+
+    // Active plans whose patient is still active and alive, and whose fixed volunteer (if any) is still
+    // active. Plans store their status as text and patients and users as an ordinal, hence two parameters.
+    // Locked, so a concurrent run waits here and then reads the materializedThrough the other one wrote
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM CarePlan p JOIN p.patient pt LEFT JOIN p.volunteer v "
+            + "WHERE p.status = :planStatus AND pt.status = :status AND pt.alivestatus = :alive "
+            + "AND (v IS NULL OR v.status = :status) ORDER BY p.id")
+    List<CarePlan> findSchedulable(@Param("planStatus") Status planStatus, @Param("status") Status status,
+                                   @Param("alive") AliveStatus alive);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CarePlan p SET p.status = :status WHERE p.patient.id = :patientId AND p.status <> :status")
+    int updateStatusByPatientId(@Param("patientId") Long patientId, @Param("status") Status status);
+}
@@ -6,9 +6,11 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.time.Instant;
 import java.util.List;
 
 public interface ConsumableRepository extends JpaRepository<Consumable, Long> {
     Page<Consumable> findAllByStatus(Status status, Pageable pageable);
     List<Consumable> findAllByStatus(Status status);
+    List<Consumable> findByUpdatedAtAfter(Instant since);
 }
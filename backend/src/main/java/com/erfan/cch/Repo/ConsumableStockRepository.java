@@ -0,0 +1,154 @@
+package com.erfan.cch.Repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set-based stock and usage writes. Each method sends one JDBC batch instead of
+ * one statement (and flush) per consumable.
+ */
+@Repository
+public class ConsumableStockRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConsumableStockRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Subtracts each quantity only if enough stock is left. The returned update counts
+     * line up with the map's iteration order; a 0 means that row did not have enough stock.
+     * A negative quantity puts stock back.
+     */
+    public int[] deductAll(Map<Long, Integer> quantities) {
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        Timestamp now = now();
+        quantities.forEach((id, qty) -> args.add(new Object[]{qty, now, id, qty}));
+        return jdbcTemplate.batchUpdate(
+                "UPDATE consumable SET stock_quantity = stock_quantity - ?, updated_at = ? WHERE id = ? AND stock_quantity >= ?",
+                args);
+    }
+
+    public int add(Long consumableId, int quantity) {
+        return jdbcTemplate.update(
+                "UPDATE consumable SET stock_quantity = COALESCE(stock_quantity, 0) + ?, updated_at = ? WHERE id = ?",
+                quantity, now(), consumableId);
+    }
+
+    /**
+     * Returns 0 when the row is missing or does not hold enough stock; nothing is changed then.
+     */
+    public int subtract(Long consumableId, int quantity) {
+        return jdbcTemplate.update(
+                "UPDATE consumable SET stock_quantity = stock_quantity - ?, updated_at = ? WHERE id = ? AND stock_quantity >= ?",
+                quantity, now(), consumableId, quantity);
+    }
+
+    public void deleteUsages(Long visitId) {
+        jdbcTemplate.update("DELETE FROM visit_consumable_usage WHERE visit_report_id = ?", visitId);
+    }
+
+    public void deleteUsages(Collection<Long> visitIds) {
+        List<Object[]> args = new ArrayList<>(visitIds.size());
+        visitIds.forEach(id -> args.add(new Object[]{id}));
+        jdbcTemplate.batchUpdate("DELETE FROM visit_consumable_usage WHERE visit_report_id = ?", args);
+    }
+
+    public void insertUsages(Map<Long, Map<Long, Integer>> quantitiesByVisit) {
+        List<Object[]> args = new ArrayList<>();
+        quantitiesByVisit.forEach((visitId, quantities) ->
+                quantities.forEach((id, qty) -> args.add(new Object[]{visitId, id, qty})));
+        if (args.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO visit_consumable_usage (visit_report_id, consumable_id, quantity_used) VALUES (?, ?, ?)",
+                args);
+    }
+
+    public void insertUsages(Long visitId, Map<Long, Integer> quantities) {
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        quantities.forEach((id, qty) -> args.add(new Object[]{visitId, id, qty}));
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO visit_consumable_usage (visit_report_id, consumable_id, quantity_used) VALUES (?, ?, ?)",
+                args);
+    }
+
+    /**
+     * Current usage rows of the given visits, as visit id to consumable id to quantity.
+     */
+    public Map<Long, Map<Long, Integer>> findUsages(Collection<Long> visitIds) {
+        Map<Long, Map<Long, Integer>> usages = new HashMap<>();
+        if (visitIds.isEmpty()) {
+            return usages;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(visitIds.size(), "?"));
+        jdbcTemplate.query(
+                "SELECT visit_report_id, consumable_id, quantity_used FROM visit_consumable_usage WHERE visit_report_id IN ("
+                        + placeholders + ")",
+                rs -> {
+                    usages.computeIfAbsent(rs.getLong(1), id -> new HashMap<>())
+                            .merge(rs.getLong(2), rs.getInt(3), Integer::sum);
+                },
+                visitIds.toArray());
+        return usages;
+    }
+
+    /**
+     * Adds each delta to its (day, consumable) rollup row, creating the row on first use.
+     * Callers pass the keys sorted so concurrent submissions lock rollup rows in the same order.
+     */
+    public void addDailyUsage(Map<LocalDate, Map<Long, Long>> deltas) {
+        List<Object[]> args = new ArrayList<>();
+        deltas.forEach((day, quantities) ->
+                quantities.forEach((id, qty) -> args.add(new Object[]{Date.valueOf(day), id, qty})));
+        if (args.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO consumable_usage_daily (usage_date, consumable_id, quantity_used) VALUES (?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE quantity_used = quantity_used + VALUES(quantity_used)",
+                args);
+    }
+
+    /**
+     * Recomputes the whole rollup from the usage rows of visits with the given status (its
+     * ordinal). Visits completed before completion dates were recorded fall on their visit date.
+     */
+    public int rebuildDailyUsage(int status) {
+        jdbcTemplate.update("DELETE FROM consumable_usage_daily");
+        return jdbcTemplate.update("""
+                INSERT INTO consumable_usage_daily (usage_date, consumable_id, quantity_used)
+                SELECT COALESCE(v.completed_date, v.visit_date), u.consumable_id, SUM(u.quantity_used)
+                FROM visit_consumable_usage u
+                JOIN patient_visit_report v ON v.id = u.visit_report_id
+                WHERE v.status = ? AND COALESCE(v.completed_date, v.visit_date) IS NOT NULL
+                GROUP BY COALESCE(v.completed_date, v.visit_date), u.consumable_id
+                """, status);
+    }
+
+    public boolean hasDailyUsage() {
+        return jdbcTemplate.queryForList("SELECT 1 FROM consumable_usage_daily LIMIT 1").size() > 0;
+    }
+
+    public boolean hasUsages() {
+        return jdbcTemplate.queryForList("SELECT 1 FROM visit_consumable_usage LIMIT 1").size() > 0;
+    }
+
+    // These writes bypass Hibernate, so they keep the sync timestamp current themselves
+    private static Timestamp now() {
+        return Timestamp.from(Instant.now());
+    }
+}
@@ -0,0 +1,23 @@
+package com.erfan.cch.Repo;
+
+import com.erfan.cch.Models.ConsumableUsageDaily;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ConsumableUsageDailyRepository extends JpaRepository<ConsumableUsageDaily, Long> {
+    // Both bounds are always bound so the range can use the (usage_date, consumable_id) key
+    @Query("""
+            SELECT d.consumable.id, d.consumable.name, SUM(d.quantityUsed)
+            FROM ConsumableUsageDaily d
+            WHERE d.usageDate BETWEEN :startDate AND :endDate
+            GROUP BY d.consumable.id, d.consumable.name
+            HAVING SUM(d.quantityUsed) > 0
+            ORDER BY d.consumable.name
+            """)
+    List<Object[]> findUsageSummary(@Param("startDate") LocalDate startDate,
+                                    @Param("endDate") LocalDate endDate);
+}
@@ -0,0 +1,79 @@
+package com.erfan.cch.Repo;
+
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.utils.VisitCodeGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves the pooled visit id generator past the ids already in the table. Visits used to be
+ * IDENTITY columns, so on an existing database the generator row starts far below max(id).
+ * Likewise moves the visit code generator past the last stored code. Never moves either
+ * counter backwards.
+ *
+ * <p>Runs once every singleton, the EntityManagerFactory and its schema included, has been
+ * created, which is before the context starts the web server and registers the scheduled
+ * jobs. A refresh event would come only after the server is already taking requests, and
+ * again for every child context.
+ */
+@Component
+public class IdGeneratorInitializer implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorInitializer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VisitCodeGenerator visitCodeGenerator;
+    private final AtomicBoolean aligned = new AtomicBoolean();
+
+    public IdGeneratorInitializer(JdbcTemplate jdbcTemplate, VisitCodeGenerator visitCodeGenerator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.visitCodeGenerator = visitCodeGenerator;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (aligned.compareAndSet(false, true)) {
+            alignVisitIds();
+            alignVisitCodes();
+        }
+    }
+
+    public void alignVisitIds() {
+        // The pooled optimizer hands out (next_val - allocationSize, next_val], so the first
+        // block must end at least one allocation past the current maximum
+        Long floor = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) + ? FROM patient_visit_report", Long.class,
+                PatientVisitReport.ID_ALLOCATION_SIZE);
+        int updated = jdbcTemplate.update(
+                "UPDATE " + PatientVisitReport.ID_GENERATOR_TABLE
+                        + " SET next_val = GREATEST(next_val, ?) WHERE sequence_name = ?",
+                floor, PatientVisitReport.ID_GENERATOR_KEY);
+        if (updated == 0) {
+            jdbcTemplate.update(
+                    "INSERT INTO " + PatientVisitReport.ID_GENERATOR_TABLE + " (sequence_name, next_val) VALUES (?, ?)",
+                    PatientVisitReport.ID_GENERATOR_KEY, floor);
+        }
+        logger.info("Visit id generator starts at or above {}", floor);
+    }
+
+    public void alignVisitCodes() {
+        // Codes are fixed width and sort in issue order, so the largest one is the latest;
+        // the older random codes are shorter and left out
+        String last = jdbcTemplate.queryForObject(
+                "SELECT MAX(visit_code) FROM patient_visit_report WHERE visit_code LIKE 'VIS-%' "
+                        + "AND CHAR_LENGTH(visit_code) = ?", String.class, VisitCodeGenerator.CODE_LENGTH);
+        if (last == null) {
+            return;
+        }
+        if (visitCodeGenerator.advancePast(last)) {
+            logger.info("Visit codes continue after {}", last);
+        } else {
+            logger.warn("Could not read the last visit code {}, codes continue from the clock", last);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.erfan.cch.Repo;
+
+import com.erfan.cch.Models.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+    Optional<IdempotencyRecord> findByPrincipalIdAndIdempotencyKey(Long principalId, String idempotencyKey);
+
+    // Rows written before expires_at existed fall back to their creation time
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now "
+            + "OR (r.expiresAt IS NULL AND r.createdAt < :createdBefore)")
+    int deleteExpired(@Param("now") Instant now, @Param("createdBefore") Instant createdBefore);
+}
@@ -3,12 +3,19 @@ package com.erfan.cch.Repo;
 import com.erfan.cch.Enums.Status;
 import com.erfan.cch.Enums.AliveStatus;
 import com.erfan.cch.Models.Patient;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface PatientRepository extends JpaRepository<Patient, Long> {
 
@@ -27,6 +34,19 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
 
     boolean existsByMobileNumber(String mobileNumber);
 
+    // Row locks that make care plan runs over the same patient take turns; ordered by id so
+    // concurrent runs lock in the same order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Patient p WHERE p.id IN :ids ORDER BY p.id")
+    List<Patient> lockAllById(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Patient> findLockedById(Long id);
+
+    @Query("SELECT p.id, p.latitude, p.longitude FROM Patient p WHERE p.status = :status "
+            + "AND p.alivestatus = :alivestatus AND p.latitude IS NOT NULL AND p.longitude IS NOT NULL")
+    List<Object[]> findLocations(Status status, AliveStatus alivestatus);
+
     Page<Patient> findByStatusAndAlivestatus(Status status, AliveStatus alivestatus, Pageable pageable);
 
     Page<Patient> findByStatusAndAlivestatusAndNameContainingIgnoreCaseOrStatusAndAlivestatusAndMobileNumberContaining(
@@ -36,6 +56,27 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
 
     int countByDateBetween(LocalDate start, LocalDate end);
 
+    long countByStatusAndAlivestatus(Status status, AliveStatus alivestatus);
+
+    // Keyset listings: rows after the cursor id, read off the (status, ..., id) indexes without a COUNT(*)
+    Slice<Patient> findByStatusAndIdGreaterThanOrderByIdAsc(Status status, Long afterId, Pageable pageable);
+
+    Slice<Patient> findByStatusAndAlivestatusAndIdGreaterThanOrderByIdAsc(Status status, AliveStatus alivestatus,
+            Long afterId, Pageable pageable);
+
+    @Query("SELECT p FROM Patient p WHERE p.status = :status AND p.id > :afterId "
+            + "AND (LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%')) OR p.mobileNumber LIKE CONCAT('%', :search, '%')) "
+            + "ORDER BY p.id")
+    Slice<Patient> searchAfter(Status status, String search, Long afterId, Pageable pageable);
+
+    @Query("SELECT p FROM Patient p WHERE p.status = :status AND p.alivestatus = :alivestatus AND p.id > :afterId "
+            + "AND (LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%')) OR p.mobileNumber LIKE CONCAT('%', :search, '%')) "
+            + "ORDER BY p.id")
+    Slice<Patient> searchAfter(Status status, AliveStatus alivestatus, String search, Long afterId, Pageable pageable);
+
+    @Query("SELECT p.date, COUNT(p) FROM Patient p WHERE p.date IS NOT NULL GROUP BY p.date ORDER BY p.date")
+    List<Object[]> countRegistrationsPerDate();
+
     int countByDateLessThanEqual(LocalDate end);
 
     int countByDateGreaterThanEqual(LocalDate start);
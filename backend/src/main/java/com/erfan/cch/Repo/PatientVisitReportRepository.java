@@ -7,7 +7,9 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
@@ -16,15 +18,55 @@ public interface PatientVisitReportRepository extends JpaRepository<PatientVisit
     List<PatientVisitReport> findByVolunteerIdAndVisitDate(Long volunteerId, LocalDate visitDate);
 
     List<PatientVisitReport> findByVolunteerIdAndStatus(Long volunteerId, Status status);
+
+    List<PatientVisitReport> findByVolunteerIdAndVisitDateGreaterThanEqual(Long volunteerId, LocalDate from);
+
+    // The volunteer's visits from the given date on that changed since the cursor, or whose patient did:
+    // a synced visit carries the patient's name and location
+    @Query("SELECT v FROM PatientVisitReport v LEFT JOIN v.patient p WHERE v.volunteer.id = :volunteerId "
+            + "AND v.visitDate >= :from AND (v.updatedAt > :since OR p.updatedAt > :since)")
+    List<PatientVisitReport> findChangedSince(Long volunteerId, LocalDate from, Instant since);
+
+    // The volunteer's visits changed since the cursor that left their list by being dated before it
+    @Query("SELECT v.id FROM PatientVisitReport v WHERE v.volunteer.id = :volunteerId "
+            + "AND v.visitDate < :from AND v.updatedAt > :since")
+    List<Long> findRemovedVisitIds(Long volunteerId, LocalDate from, Instant since);
+
     Long countByStatus(Status status);
 
     boolean existsByPatientIdAndVisitDate(Long patientId, LocalDate visitDate);
 
+    @Query("SELECT v.patient.id, v.visitDate FROM PatientVisitReport v WHERE v.volunteer.id = :volunteerId "
+            + "AND v.patient.id IN :patientIds AND v.visitDate IN :visitDates")
+    List<Object[]> findAssignedPatientDates(Long volunteerId, Collection<Long> patientIds,
+                                            Collection<LocalDate> visitDates);
+
+    @Query("SELECT v.patient.id, v.visitDate FROM PatientVisitReport v "
+            + "WHERE v.patient.id IN :patientIds AND v.visitDate BETWEEN :from AND :to")
+    List<Object[]> findPatientDatesBetween(Collection<Long> patientIds, LocalDate from, LocalDate to);
+
+    @Query("SELECT v.volunteer.id, v.visitDate, COUNT(v) FROM PatientVisitReport v "
+            + "WHERE v.volunteer.id IN :volunteerIds AND v.visitDate BETWEEN :from AND :to "
+            + "GROUP BY v.volunteer.id, v.visitDate")
+    List<Object[]> countVisitsPerVolunteerAndDate(Collection<Long> volunteerIds, LocalDate from, LocalDate to);
+
     List<PatientVisitReport> findByVisitDateBefore(LocalDate endDate);
 
+    @Query("SELECT v FROM PatientVisitReport v LEFT JOIN FETCH v.patient LEFT JOIN FETCH v.volunteer "
+            + "WHERE v.visitDate = :visitDate ORDER BY v.id")
+    List<PatientVisitReport> findWithPatientAndVolunteerByVisitDate(LocalDate visitDate);
+
     List<PatientVisitReport> findByVisitDateBetween(LocalDate startDate, LocalDate endDate);
 
     List<PatientVisitReport> findByVisitDateAfter(LocalDate startDate);
+    @Query("SELECT v.volunteer.id, v.visitDate, COUNT(v) FROM PatientVisitReport v "
+            + "WHERE v.volunteer IS NOT NULL AND v.visitDate >= :from GROUP BY v.volunteer.id, v.visitDate")
+    List<Object[]> countVisitsPerVolunteerAndDateFrom(LocalDate from);
+
+    @Query("SELECT v.volunteer.id, COUNT(v) FROM PatientVisitReport v "
+            + "WHERE v.volunteer IS NOT NULL AND v.status = :status GROUP BY v.volunteer.id")
+    List<Object[]> countVisitsPerVolunteerWithStatus(Status status);
+
     @Query("SELECT COUNT(v) FROM PatientVisitReport v WHERE v.volunteer.id = :volunteerId AND v.visitDate = :today")
     long countTodayVisits(Long volunteerId, LocalDate today);
 
@@ -32,5 +74,28 @@ public interface PatientVisitReportRepository extends JpaRepository<PatientVisit
     long countByVolunteerAndStatus(Long volunteerId, Status status);
 
     Page<PatientVisitReport> findByVolunteerIdAndStatusIn(Long volunteerId, Collection<Status> statuses, Pageable pageable);
+
+    /*
+     * Keyset listings, newest visit first: rows strictly before the (visitDate, id) cursor.
+     * The redundant "visitDate <= :beforeDate" gives the index a range to seek to. Date bounds
+     * are always bound so the range stays sargable.
+     */
+    @Query("SELECT v FROM PatientVisitReport v WHERE v.visitDate BETWEEN :startDate AND :endDate "
+            + "AND v.visitDate <= :beforeDate AND (v.visitDate < :beforeDate OR v.id < :beforeId) "
+            + "ORDER BY v.visitDate DESC, v.id DESC")
+    Slice<PatientVisitReport> findVisitsBefore(LocalDate startDate, LocalDate endDate, LocalDate beforeDate,
+            Long beforeId, Pageable pageable);
+
+    @Query("SELECT v FROM PatientVisitReport v WHERE v.status = :status AND v.visitDate BETWEEN :startDate AND :endDate "
+            + "AND v.visitDate <= :beforeDate AND (v.visitDate < :beforeDate OR v.id < :beforeId) "
+            + "ORDER BY v.visitDate DESC, v.id DESC")
+    Slice<PatientVisitReport> findVisitsBefore(Status status, LocalDate startDate, LocalDate endDate,
+            LocalDate beforeDate, Long beforeId, Pageable pageable);
+
+    @Query("SELECT v FROM PatientVisitReport v WHERE v.volunteer.id = :volunteerId AND v.status IN :statuses "
+            + "AND v.visitDate <= :beforeDate AND (v.visitDate < :beforeDate OR v.id < :beforeId) "
+            + "ORDER BY v.visitDate DESC, v.id DESC")
+    Slice<PatientVisitReport> findVolunteerVisitsBefore(Long volunteerId, Collection<Status> statuses,
+            LocalDate beforeDate, Long beforeId, Pageable pageable);
 }
 
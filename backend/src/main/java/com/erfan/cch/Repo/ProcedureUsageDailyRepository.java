@@ -0,0 +1,23 @@
+package com.erfan.cch.Repo;
+
+import com.erfan.cch.Models.ProcedureUsageDaily;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ProcedureUsageDailyRepository extends JpaRepository<ProcedureUsageDaily, Long> {
+    // Finest grain any report needs; coarser groupings are folded from these rows
+    @Query("""
+            SELECT YEAR(d.usageDate), MONTH(d.usageDate), p.id, p.name, d.volunteerId, SUM(d.visitCount)
+            FROM ProcedureUsageDaily d
+            JOIN d.procedure p
+            WHERE d.usageDate BETWEEN :startDate AND :endDate
+            GROUP BY YEAR(d.usageDate), MONTH(d.usageDate), p.id, p.name, d.volunteerId
+            HAVING SUM(d.visitCount) > 0
+            """)
+    List<Object[]> findMonthlyCounts(@Param("startDate") LocalDate startDate,
+                                     @Param("endDate") LocalDate endDate);
+}
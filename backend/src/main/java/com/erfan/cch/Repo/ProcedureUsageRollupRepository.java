@@ -0,0 +1,97 @@
+package com.erfan.cch.Repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * JDBC writes behind the procedure_usage_daily rollup.
+ */
+@Repository
+public class ProcedureUsageRollupRepository {
+
+    /**
+     * One rollup row. Ordered so a sorted batch locks rows in the same order for every caller.
+     */
+    public record DailyKey(LocalDate day, long procedureId, long volunteerId) implements Comparable<DailyKey> {
+        private static final Comparator<DailyKey> ORDER = Comparator.comparing(DailyKey::day)
+                .thenComparingLong(DailyKey::procedureId)
+                .thenComparingLong(DailyKey::volunteerId);
+
+        @Override
+        public int compareTo(DailyKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProcedureUsageRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Procedure ids currently recorded on each of the given visits.
+     */
+    public Map<Long, List<Long>> findProcedures(Collection<Long> visitIds) {
+        Map<Long, List<Long>> procedures = new HashMap<>();
+        if (visitIds.isEmpty()) {
+            return procedures;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(visitIds.size(), "?"));
+        jdbcTemplate.query(
+                "SELECT visit_id, procedure_id FROM visit_procedure WHERE visit_id IN (" + placeholders + ")",
+                rs -> {
+                    procedures.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getLong(2));
+                },
+                visitIds.toArray());
+        return procedures;
+    }
+
+    public void addDailyCounts(SortedMap<DailyKey, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((key, count) ->
+                args.add(new Object[]{Date.valueOf(key.day()), key.procedureId(), key.volunteerId(), count}));
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO procedure_usage_daily (usage_date, procedure_id, volunteer_id, visit_count) VALUES (?, ?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE visit_count = visit_count + VALUES(visit_count)",
+                args);
+    }
+
+    /**
+     * Recomputes the whole rollup from visit_procedure for visits with the given status
+     * ordinal, counting each visit on its completion day (its visit day if it has none).
+     */
+    public int rebuildDailyCounts(int status, long noVolunteer) {
+        jdbcTemplate.update("DELETE FROM procedure_usage_daily");
+        return jdbcTemplate.update("""
+                INSERT INTO procedure_usage_daily (usage_date, procedure_id, volunteer_id, visit_count)
+                SELECT COALESCE(v.completed_date, v.visit_date), vp.procedure_id, COALESCE(v.volunteer_id, ?), COUNT(*)
+                FROM visit_procedure vp
+                JOIN patient_visit_report v ON v.id = vp.visit_id
+                WHERE v.status = ? AND COALESCE(v.completed_date, v.visit_date) IS NOT NULL
+                GROUP BY COALESCE(v.completed_date, v.visit_date), vp.procedure_id, COALESCE(v.volunteer_id, ?)
+                """, noVolunteer, status, noVolunteer);
+    }
+
+    public boolean hasDailyCounts() {
+        return jdbcTemplate.queryForList("SELECT 1 FROM procedure_usage_daily LIMIT 1").size() > 0;
+    }
+
+    public boolean hasProcedures() {
+        return jdbcTemplate.queryForList("SELECT 1 FROM visit_procedure LIMIT 1").size() > 0;
+    }
+}
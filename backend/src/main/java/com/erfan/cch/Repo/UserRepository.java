@@ -2,11 +2,24 @@ package com.erfan.cch.Repo;
 
 import com.erfan.cch.Models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String username);
     boolean existsByEmail(String email);
+
+    @Query("SELECT u.id, u.tokensValidAfter FROM User u WHERE u.tokensValidAfter IS NOT NULL")
+    List<Object[]> findTokenRevocations();
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
 }
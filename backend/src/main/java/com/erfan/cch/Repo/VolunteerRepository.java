@@ -4,13 +4,17 @@ import com.erfan.cch.Enums.Status;
 import com.erfan.cch.Models.Volunteer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.Collection;
 import java.util.List;
 
 public interface VolunteerRepository extends JpaRepository<Volunteer, Long> {
     List<Volunteer> findAllByStatus(Status status);
+    long countByStatus(Status status);
+    List<Volunteer> findAllByStatusAndSpecializationIn(Status status, Collection<String> specializations);
     Page<Volunteer> findByStatus(Status status, Pageable pageable);
 
     Page<Volunteer> findByStatusAndNameContainingIgnoreCaseOrStatusAndMobileNumberContaining(
@@ -18,4 +22,11 @@ public interface VolunteerRepository extends JpaRepository<Volunteer, Long> {
             Status status2, String mobile,
             Pageable pageable
     );
+
+    Slice<Volunteer> findByStatusAndIdGreaterThanOrderByIdAsc(Status status, Long afterId, Pageable pageable);
+
+    @Query("SELECT v FROM Volunteer v WHERE v.status = :status AND v.id > :afterId "
+            + "AND (LOWER(v.name) LIKE LOWER(CONCAT('%', :search, '%')) OR v.mobileNumber LIKE CONCAT('%', :search, '%')) "
+            + "ORDER BY v.id")
+    Slice<Volunteer> searchAfter(Status status, String search, Long afterId, Pageable pageable);
 }
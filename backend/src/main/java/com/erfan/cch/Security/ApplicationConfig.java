@@ -1,45 +1,102 @@
 package com.erfan.cch.Security;
 
 
+import com.erfan.cch.Models.User;
 import com.erfan.cch.Repo.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.Map;
+
 
 @Configuration
 public class ApplicationConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ApplicationConfig.class);
+    private static final String BCRYPT_ID = "bcrypt";
+
     private final UserRepository userRepository;
+    private final int userCacheMaxSize;
+    private final long userCacheTtlSeconds;
+    private final int hashingThreads;
+    private final int hashingQueueCapacity;
+    private final long hashingTimeoutMillis;
+    private final int bcryptStrength;
+    private final int bcryptMaxStrength;
+    private final long targetHashMillis;
 
-    public ApplicationConfig(UserRepository userRepository) {
+    public ApplicationConfig(UserRepository userRepository,
+                             @Value("${cch.security.user-cache.max-size:1000}") int userCacheMaxSize,
+                             @Value("${cch.security.user-cache.ttl-seconds:300}") long userCacheTtlSeconds,
+                             @Value("${cch.security.hashing.threads:2}") int hashingThreads,
+                             @Value("${cch.security.hashing.queue-capacity:32}") int hashingQueueCapacity,
+                             @Value("${cch.security.hashing.timeout-ms:5000}") long hashingTimeoutMillis,
+                             @Value("${cch.security.password.bcrypt-strength:10}") int bcryptStrength,
+                             @Value("${cch.security.password.bcrypt-max-strength:14}") int bcryptMaxStrength,
+                             @Value("${cch.security.password.target-hash-ms:0}") long targetHashMillis) {
         this.userRepository = userRepository;
+        this.userCacheMaxSize = userCacheMaxSize;
+        this.userCacheTtlSeconds = userCacheTtlSeconds;
+        this.hashingThreads = hashingThreads;
+        this.hashingQueueCapacity = hashingQueueCapacity;
+        this.hashingTimeoutMillis = hashingTimeoutMillis;
+        this.bcryptStrength = bcryptStrength;
+        this.bcryptMaxStrength = bcryptMaxStrength;
+        this.targetHashMillis = targetHashMillis;
     }
 
     @Bean
-    public UserDetailsService userDetailsService(){
-        return username -> userRepository.findByEmail(username)
+    public UserDetailsCache userDetailsService(){
+        UserDetailsService database = username -> userRepository.findByEmail(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        return new UserDetailsCache(database, userCacheMaxSize, userCacheTtlSeconds);
     }
     @Bean
     public AuthenticationProvider authenticationProvider(){
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService());
         authProvider.setPasswordEncoder(passwordEncoder());
+        // Re-hashes on successful login whenever passwordEncoder().upgradeEncoding() says the stored cost is outdated
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService());
         return authProvider;
     }
     @Bean
+    public UserDetailsPasswordService userDetailsPasswordService() {
+        return (userDetails, newPassword) -> {
+            User user = (User) userDetails;
+            userRepository.updatePassword(user.getId(), newPassword);
+            userDetailsService().evict(user.getEmail());
+            user.setPassword(newPassword);
+            return user;
+        };
+    }
+    @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration config) throws Exception {
         return config.getAuthenticationManager();
     }
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder() {
+        int strength = targetHashMillis > 0
+                ? BCryptCostCalibrator.calibrate(bcryptStrength, bcryptMaxStrength, targetHashMillis)
+                : bcryptStrength;
+        logger.info("Using BCrypt cost {} for password hashing", strength);
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(BCRYPT_ID, Map.<String, PasswordEncoder>of(BCRYPT_ID, bcrypt));
+        // Hashes stored before the {bcrypt} prefix was introduced are plain BCrypt; they get upgraded on next login
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return new BoundedPasswordEncoder(delegating,
+                hashingThreads, hashingQueueCapacity, hashingTimeoutMillis);
     }
 }
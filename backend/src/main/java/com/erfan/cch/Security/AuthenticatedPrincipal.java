@@ -0,0 +1,49 @@
+package com.erfan.cch.Security;
+
+import com.erfan.cch.Enums.UserType;
+import io.jsonwebtoken.Claims;
+
+/**
+ * The caller of the current request, built once from the verified token claims.
+ */
+public class AuthenticatedPrincipal {
+
+    public static final String REQUEST_ATTRIBUTE = AuthenticatedPrincipal.class.getName();
+
+    private final Long id;
+    private final String email;
+    private final String name;
+    private final UserType role;
+
+    public AuthenticatedPrincipal(Long id, String email, String name, UserType role) {
+        this.id = id;
+        this.email = email;
+        this.name = name;
+        this.role = role;
+    }
+
+    public static AuthenticatedPrincipal fromClaims(Claims claims) {
+        String userType = claims.get("userType", String.class);
+        return new AuthenticatedPrincipal(
+                claims.getId() != null ? Long.valueOf(claims.getId()) : null,
+                claims.getSubject(),
+                claims.get("name", String.class),
+                userType != null ? UserType.valueOf(userType) : null);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public UserType getRole() {
+        return role;
+    }
+}
@@ -10,8 +10,10 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 
@@ -24,13 +26,15 @@ public class AuthenticationService {
     private final AuthenticationManager authenticationManager;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtils jwtUtils;
+    private final UserDetailsCache userDetailsCache;
 
-    public AuthenticationService(UserRepository userRepository, JwtService jwtService, AuthenticationManager authenticationManager, PasswordEncoder passwordEncoder, JwtUtils jwtUtils) {
+    public AuthenticationService(UserRepository userRepository, JwtService jwtService, AuthenticationManager authenticationManager, PasswordEncoder passwordEncoder, JwtUtils jwtUtils, UserDetailsCache userDetailsCache) {
         this.userRepository = userRepository;
         this.jwtService = jwtService;
         this.authenticationManager = authenticationManager;
         this.passwordEncoder = passwordEncoder;
         this.jwtUtils = jwtUtils;
+        this.userDetailsCache = userDetailsCache;
     }
 
     public User registerUser(User registrationDto) {
@@ -47,23 +51,28 @@ public class AuthenticationService {
             user.setPassword(passwordEncoder.encode(registrationDto.getPassword()));
             user.setUserType(registrationDto.getUserType());
             user.setName(registrationDto.getName());
-            return userRepository.save(user);
+            User saved = userRepository.save(user);
+            userDetailsCache.evict(normalizedEmail);
+            return saved;
         } catch (DataIntegrityViolationException e) {
             throw new RuntimeException("Email already exists: " + registrationDto.getEmail());
+        } catch (ResponseStatusException e) {
+            // Keeps the 503 from a saturated password encoder instead of turning it into a 500
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("An error occurred during registration.", e);
         }
     }
 
     public AuthenticationResponse authenticate(AuthenticationRequest request) {
-        authenticationManager.authenticate(
+        // The provider already loaded the user to check the password; reuse it instead of querying again
+        Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
                         request.getEmail(),
                         request.getPassword()
                 )
         );
-        var user = userRepository.findByEmail(request.getEmail())
-                .orElseThrow();
+        var user = (User) authentication.getPrincipal();
 
         var jwtToken = jwtService.generateToken(user);
         AuthenticationResponse authenticationResponse = new AuthenticationResponse();
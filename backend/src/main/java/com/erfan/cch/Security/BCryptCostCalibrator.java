@@ -0,0 +1,47 @@
+package com.erfan.cch.Security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Picks the BCrypt cost whose hash time on this host is closest to a target,
+ * so login latency stays predictable when the service moves to different hardware.
+ */
+public final class BCryptCostCalibrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BCryptCostCalibrator.class);
+    private static final String SAMPLE_PASSWORD = "calibration-sample-password";
+
+    private BCryptCostCalibrator() {
+    }
+
+    /**
+     * Returns the cost in [minStrength, maxStrength] whose measured hash time is closest to targetMillis.
+     */
+    public static int calibrate(int minStrength, int maxStrength, long targetMillis) {
+        // Warm up so JIT compilation doesn't inflate the first measurement
+        new BCryptPasswordEncoder(minStrength).encode(SAMPLE_PASSWORD);
+        long previous = -1;
+        for (int strength = minStrength; strength <= maxStrength; strength++) {
+            long elapsed = timeOneHash(strength);
+            logger.debug("BCrypt cost {} took {} ms", strength, elapsed);
+            if (elapsed >= targetMillis) {
+                // Each step doubles the work, so the cost just below may be the closer one
+                if (previous >= 0 && targetMillis - previous < elapsed - targetMillis) {
+                    return strength - 1;
+                }
+                return strength;
+            }
+            previous = elapsed;
+        }
+        return maxStrength;
+    }
+
+    private static long timeOneHash(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long start = System.nanoTime();
+        encoder.encode(SAMPLE_PASSWORD);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
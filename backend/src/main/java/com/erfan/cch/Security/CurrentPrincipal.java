@@ -0,0 +1,43 @@
+package com.erfan.cch.Security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Gives services access to the principal that {@link JwtAuthenticationFilter} resolved for
+ * the current request, so they don't have to re-parse the bearer token or reload the user.
+ */
+@Component
+public class CurrentPrincipal {
+
+    private final HttpServletRequest request;
+    private final JwtService jwtService;
+    private final JwtUtils jwtUtils;
+
+    public CurrentPrincipal(HttpServletRequest request, JwtService jwtService, JwtUtils jwtUtils) {
+        this.request = request;
+        this.jwtService = jwtService;
+        this.jwtUtils = jwtUtils;
+    }
+
+    public AuthenticatedPrincipal get() {
+        Object cached = request.getAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE);
+        if (cached instanceof AuthenticatedPrincipal principal) {
+            return principal;
+        }
+        // The filter skips parsing when an authentication is already present; fall back once and keep it
+        String jwt = jwtUtils.getJwtFromRequest(request);
+        if (jwt == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Missing bearer token");
+        }
+        AuthenticatedPrincipal principal = AuthenticatedPrincipal.fromClaims(jwtService.parseClaims(jwt));
+        request.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, principal);
+        return principal;
+    }
+
+    public Long getId() {
+        return get().getId();
+    }
+}
@@ -1,12 +1,15 @@
 package com.erfan.cch.Security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -15,14 +18,22 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final TokenRevocationRegistry revocationRegistry;
+    // "claims" trusts the verified token claims; "database" reloads the user on every request
+    private final boolean claimsOnly;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService,
+                                   TokenRevocationRegistry revocationRegistry,
+                                   @Value("${cch.security.auth-mode:database}") String authMode) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.revocationRegistry = revocationRegistry;
+        this.claimsOnly = "claims".equalsIgnoreCase(authMode.trim());
     }
 
 
@@ -34,27 +45,53 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
             final String authHeader = request.getHeader("Authorization");
             final String jwt;
+            final Claims claims;
             final String userEmail;
             if (authHeader == null || authHeader.length() < 7 || !authHeader.startsWith("Bearer ")) {
                 filterChain.doFilter(request, response);
                 return;
             }
             jwt = authHeader.substring(7);
-            userEmail = jwtService.extractUsername(jwt);
+            claims = jwtService.parseClaims(jwt);
+            userEmail = claims.getSubject();
             if(userEmail !=null && SecurityContextHolder.getContext().getAuthentication() == null){
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-                if(jwtService.isTokenValid(jwt,userDetails)){
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities()
-                    );
+                AuthenticatedPrincipal principal = AuthenticatedPrincipal.fromClaims(claims);
+                UsernamePasswordAuthenticationToken authToken = claimsOnly
+                        ? authenticateFromClaims(principal, claims)
+                        : authenticateFromDatabase(userEmail, claims);
+                if(authToken != null){
                     authToken.setDetails(
                             new WebAuthenticationDetailsSource().buildDetails(request)
                     );
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+                    request.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, principal);
                 }
             }
             filterChain.doFilter(request, response);
     }
+
+    private UsernamePasswordAuthenticationToken authenticateFromDatabase(String userEmail, Claims claims) {
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+        if(!jwtService.isTokenValid(claims,userDetails)){
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities()
+        );
+    }
+
+    private UsernamePasswordAuthenticationToken authenticateFromClaims(AuthenticatedPrincipal principal, Claims claims) {
+        if (principal.getRole() == null
+                || jwtService.isTokenExpired(claims)
+                || revocationRegistry.isRevoked(principal.getId(), claims.getIssuedAt())) {
+            return null;
+        }
+        return new UsernamePasswordAuthenticationToken(
+                principal,
+                null,
+                List.of(new SimpleGrantedAuthority(principal.getRole().name()))
+        );
+    }
 }
@@ -4,6 +4,7 @@ package com.erfan.cch.Security;
 import com.erfan.cch.Models.User;
 import com.erfan.cch.Services.UserService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -26,9 +27,17 @@ public class JwtService {
     private final UserService userService;
     private static final Logger logger = LoggerFactory.getLogger(JwtService.class);
 
+    // The key and parser are immutable and thread-safe, so build them once instead of per token
+    private final Key signInKey;
+    private final JwtParser jwtParser;
+
 
     public JwtService(UserService userService) {
         this.userService = userService;
+        this.signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
     }
 
     public String extractUsername(String token) {
@@ -47,6 +56,14 @@ public class JwtService {
         return claimsResolver.apply(claims);
     }
 
+    /**
+     * Verifies the signature once and returns the claims, so callers that need
+     * several values (username, expiry, id) don't parse the same token again.
+     */
+    public Claims parseClaims(String token) {
+        return extractAllClaims(token);
+    }
+
     public String generateToken(UserDetails userDetails) {
         return generateToken(new HashMap<>(), userDetails);
     }
@@ -55,46 +72,44 @@ public class JwtService {
             Map<String, Object> extraClaims,
             UserDetails userDetails
     ) {
-        User user = userService.getUserByUsername(userDetails.getUsername());
+        User user = userDetails instanceof User loaded
+                ? loaded
+                : userService.getUserByUsername(userDetails.getUsername());
         extraClaims.put("userType", user.getUserType().name());
         extraClaims.put("userId", user.getId());
         extraClaims.put("name",user.getName());
         return Jwts.builder()
                         .setClaims(extraClaims)
-                        .setId(userService.getIdfromUsername(userDetails.getUsername()))
+                        .setId(String.valueOf(user.getId()))
                         .setSubject(userDetails.getUsername())
                         .setIssuedAt(new Date(System.currentTimeMillis()))
                         .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 12))
 //                .setExpiration(new Date(System.currentTimeMillis()+1000*60*60*24*360)) for testing todo
-                        .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                        .signWith(signInKey, SignatureAlgorithm.HS256)
                         .compact();
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        return isTokenValid(extractAllClaims(token), userDetails);
+    }
+
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        final String username = claims.getSubject();
+        return (username.equals(userDetails.getUsername()) && !isTokenExpired(claims));
     }
 
     public boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return isTokenExpired(extractAllClaims(token));
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    public boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
+        return jwtParser
                 .parseClaimsJws(token)
                 .getBody();
 
     }
-
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-}
\ No newline at end of file
+}
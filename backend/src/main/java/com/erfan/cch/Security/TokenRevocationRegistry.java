@@ -0,0 +1,62 @@
+package com.erfan.cch.Security;
+
+import com.erfan.cch.Models.User;
+import com.erfan.cch.Repo.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the per-user "tokens valid after" instants stored on {@link User}.
+ * Claims-only authentication checks it instead of loading the user on every request.
+ */
+@Component
+public class TokenRevocationRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationRegistry.class);
+
+    private final UserRepository userRepository;
+    private final Map<Long, Long> validAfterMillis = new ConcurrentHashMap<>();
+
+    public TokenRevocationRegistry(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        for (Object[] row : userRepository.findTokenRevocations()) {
+            validAfterMillis.put((Long) row[0], ((Instant) row[1]).toEpochMilli());
+        }
+        logger.debug("Loaded {} token revocation entries", validAfterMillis.size());
+    }
+
+    /**
+     * Re-reads the user's revocation instant from the database, e.g. after deactivation.
+     */
+    public void refresh(Long userId) {
+        Instant validAfter = userRepository.findById(userId)
+                .map(User::getTokensValidAfter)
+                .orElse(null);
+        if (validAfter == null) {
+            validAfterMillis.remove(userId);
+        } else {
+            validAfterMillis.put(userId, validAfter.toEpochMilli());
+        }
+    }
+
+    public boolean isRevoked(Long userId, Date issuedAt) {
+        if (userId == null) {
+            return true;
+        }
+        Long after = validAfterMillis.get(userId);
+        // iat has second precision, so a token from the same second as the revocation counts as revoked
+        return after != null && (issuedAt == null || issuedAt.getTime() <= after);
+    }
+}
@@ -0,0 +1,119 @@
+package com.erfan.cch.Security;
+
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded, TTL-based cache in front of the database-backed {@link UserDetailsService}.
+ * Keys are normalized emails; callers that change a user must {@link #evict(String)} it.
+ */
+public class UserDetailsCache implements UserDetailsService {
+
+    private final UserDetailsService delegate;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // Access-ordered so the least recently used entry is dropped first once maxSize is reached
+    private final LinkedHashMap<String, Entry> entries;
+    // A token per key with a load in flight; evict() drops it, so the load that raced it doesn't cache
+    private final Map<String, Object> loading = new HashMap<>();
+
+    public UserDetailsCache(UserDetailsService delegate, int maxSize, long ttlSeconds) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > UserDetailsCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        String key = normalize(username);
+        long now = System.nanoTime();
+        Object token = new Object();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.loadedAt < ttlNanos) {
+                    hits.incrementAndGet();
+                    return entry.userDetails;
+                }
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+            loading.put(key, token);
+        }
+        misses.incrementAndGet();
+        // Load outside the lock so one slow query doesn't block every other request
+        UserDetails loaded = null;
+        try {
+            loaded = delegate.loadUserByUsername(username);
+        } finally {
+            synchronized (entries) {
+                // Gone if the user was evicted (or another load started) meanwhile: what this load read
+                // may predate that change, so it is returned to this caller but not cached
+                if (loading.remove(key, token) && loaded != null) {
+                    entries.put(key, new Entry(loaded, now));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        String key = normalize(email);
+        synchronized (entries) {
+            loading.remove(key);
+            if (entries.remove(key) != null) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static String normalize(String email) {
+        return email == null ? "" : email.trim().toLowerCase();
+    }
+
+    private record Entry(UserDetails userDetails, long loadedAt) {
+    }
+}
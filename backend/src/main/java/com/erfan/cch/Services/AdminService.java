@@ -6,13 +6,17 @@ import com.erfan.cch.Enums.Status;
 import com.erfan.cch.Enums.UserType;
 import com.erfan.cch.Models.*;
 import com.erfan.cch.Repo.*;
-import com.erfan.cch.Security.AuthenticationService;
+import com.erfan.cch.Security.CurrentPrincipal;
+import com.erfan.cch.Security.TokenRevocationRegistry;
+import com.erfan.cch.Security.UserDetailsCache;
 import com.erfan.cch.Specification.PatientVisitReportSpecifications;
 import com.erfan.cch.utils.ConvertToDto;
+import com.erfan.cch.utils.KeysetCursor;
 import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -24,9 +28,17 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -39,25 +51,38 @@ public class AdminService {
 
     private PatientVisitReportRepository reportRepository;
     private ConsumableRepository consumableRepository;
-    private VisitConsumableUsageRepository visitConsumableUsageRepository;
+    private final ConsumableUsageRollup consumableUsageRollup;
 
     private EquipmentRepository equipmentRepository;
     private final PasswordEncoder passwordEncoder;
 
     private ProcedureRepository procedureRepository;
 
-    private UserRepository userRepository;
-
-    private AuthenticationService authenticationService;
-    private final jakarta.servlet.http.HttpServletRequest request;
+    private final CurrentPrincipal currentPrincipal;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    private final UserDetailsCache userDetailsCache;
+    private final ConsumableStockService consumableStockService;
+    private final VisitCompletionService visitCompletionService;
+    private final PatientSpatialIndex patientSpatialIndex;
+    private final VisitRouteService visitRouteService;
+    private final DashboardCounters dashboardCounters;
+    private final VolunteerDashboardCounters volunteerDashboardCounters;
+    private final PatientRegistrationSeries patientRegistrationSeries;
+    private final ProcedureUsageRollup procedureUsageRollup;
+    private final CarePlanRepository carePlanRepository;
 
     public AdminService(PatientRepository patientRepository, EquipmentTypeRepository equipmentTypeRepository,
             VolunteerRepository volunteerRepository, PatientVisitReportRepository reportRepository,
             EquipmentRepository equipmentRepository, PasswordEncoder passwordEncoder,
-            ProcedureRepository procedureRepository, UserRepository userRepository,
-            AuthenticationService authenticationService, ConsumableRepository consumableRepository,
-            VisitConsumableUsageRepository visitConsumableUsageRepository,
-            jakarta.servlet.http.HttpServletRequest request) {
+            ProcedureRepository procedureRepository, ConsumableRepository consumableRepository,
+            ConsumableUsageRollup consumableUsageRollup,
+            CurrentPrincipal currentPrincipal, TokenRevocationRegistry tokenRevocationRegistry,
+            UserDetailsCache userDetailsCache, ConsumableStockService consumableStockService,
+            VisitCompletionService visitCompletionService, PatientSpatialIndex patientSpatialIndex,
+            VisitRouteService visitRouteService, DashboardCounters dashboardCounters,
+            VolunteerDashboardCounters volunteerDashboardCounters,
+            PatientRegistrationSeries patientRegistrationSeries, ProcedureUsageRollup procedureUsageRollup,
+            CarePlanRepository carePlanRepository) {
         this.patientRepository = patientRepository;
         this.equipmentTypeRepository = equipmentTypeRepository;
         this.volunteerRepository = volunteerRepository;
@@ -65,11 +90,20 @@ public class AdminService {
         this.equipmentRepository = equipmentRepository;
         this.passwordEncoder = passwordEncoder;
         this.procedureRepository = procedureRepository;
-        this.userRepository = userRepository;
-        this.authenticationService = authenticationService;
         this.consumableRepository = consumableRepository;
-        this.visitConsumableUsageRepository = visitConsumableUsageRepository;
-        this.request = request;
+        this.consumableUsageRollup = consumableUsageRollup;
+        this.currentPrincipal = currentPrincipal;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+        this.userDetailsCache = userDetailsCache;
+        this.consumableStockService = consumableStockService;
+        this.visitCompletionService = visitCompletionService;
+        this.patientSpatialIndex = patientSpatialIndex;
+        this.visitRouteService = visitRouteService;
+        this.dashboardCounters = dashboardCounters;
+        this.volunteerDashboardCounters = volunteerDashboardCounters;
+        this.patientRegistrationSeries = patientRegistrationSeries;
+        this.procedureUsageRollup = procedureUsageRollup;
+        this.carePlanRepository = carePlanRepository;
     }
 
     public int countNewPatients(LocalDate start, LocalDate end) {
@@ -77,14 +111,48 @@ public class AdminService {
             return 0; // no date range given
         }
         if (start != null && end != null) {
-            return patientRepository.countByDateBetween(start, end);
+            return (int) patientRegistrationSeries.count(start, end);
         }
         if (start != null) {
             LocalDate today = LocalDate.now();
-            return patientRepository.countByDateBetween(start, today);
+            return (int) patientRegistrationSeries.count(start, today);
         }
         // only end provided
-        return patientRepository.countByDateLessThanEqual(end);
+        return (int) patientRegistrationSeries.count(null, end);
+    }
+
+    public RegistrationSeriesDto getRegistrationSeries(LocalDate start, LocalDate end) {
+        LocalDate to = end != null ? end : LocalDate.now();
+        LocalDate from = start != null ? start : to.minusYears(1).plusDays(1);
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+        if (from.isBefore(to.minusYears(10))) {
+            throw new IllegalArgumentException("Range must not exceed ten years");
+        }
+        return new RegistrationSeriesDto(patientRegistrationSeries.weekly(from, to),
+                patientRegistrationSeries.monthly(from, to));
+    }
+
+    /**
+     * Procedure counts of completed visits; the range defaults to the last year, like the
+     * registration series.
+     */
+    public List<ProcedureFrequencyDto> getProcedureFrequency(LocalDate start, LocalDate end, boolean monthly,
+            boolean perVolunteer) {
+        LocalDate to = end != null ? end : LocalDate.now();
+        LocalDate from = start != null ? start : to.minusYears(1).plusDays(1);
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+        if (from.isBefore(to.minusYears(10))) {
+            throw new IllegalArgumentException("Range must not exceed ten years");
+        }
+        return procedureUsageRollup.frequency(from, to, monthly, perVolunteer);
+    }
+
+    public int rebuildProcedureFrequency() {
+        return procedureUsageRollup.rebuild();
     }
 
     public void addProcedure(String name) {
@@ -114,6 +182,9 @@ public class AdminService {
         visitReport.setVisitDate(visitDate);
         visitReport.setStatus(Status.PENDING);
         reportRepository.save(visitReport);
+        visitRouteService.invalidate(volunteerId, visitDate);
+        dashboardCounters.visitStatusChanged(null, Status.PENDING);
+        volunteerDashboardCounters.visitsAssigned(volunteerId, visitDate, 1);
     }
     // todo
     // public List<PatientVisitReport> getConsumablesUsageReport(LocalDate
@@ -153,6 +224,9 @@ public class AdminService {
         } catch (DataIntegrityViolationException e) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Patient with this mobile number already exists");
         }
+        patientSpatialIndex.update(patient);
+        dashboardCounters.adjust(DashboardCounters.Counter.PATIENTS, 1);
+        patientRegistrationSeries.recordRegistration(patient.getDate());
     }
 
     public void addVolunteer(Volunteer volunteer) {
@@ -161,6 +235,8 @@ public class AdminService {
         volunteer.setPassword(passwordEncoder.encode(volunteer.getPassword()));
         volunteer.setSpecialization(volunteer.getSpecialization());
         volunteerRepository.save(volunteer);
+        userDetailsCache.evict(volunteer.getEmail());
+        dashboardCounters.adjust(DashboardCounters.Counter.VOLUNTEERS, 1);
 
     }
 
@@ -168,6 +244,7 @@ public class AdminService {
         equipment.setAllocated(false);
         equipment.setAllocatedTo(null);
         equipmentRepository.save(equipment);
+        dashboardCounters.adjust(DashboardCounters.Counter.EQUIPMENT, 1);
     }
 
     public Page<EquipmentDto> getAllEquipment(String search, Pageable pageable) {
@@ -214,16 +291,47 @@ public class AdminService {
         return patients.map(ConvertToDto::convertToPatientDto);
     }
 
+    /**
+     * Keyset form of {@link #getAllPatients}: ordered by id, continuing after the cursor.
+     */
+    public CursorSliceDto<PatientDto> getPatientsAfter(String search, boolean onlyAlive, String cursor, int size) {
+        long afterId = KeysetCursor.afterId(cursor);
+        Pageable rows = KeysetCursor.firstRows(size);
+        boolean searching = search != null && !search.trim().isEmpty();
+        Slice<Patient> patients;
+        if (onlyAlive) {
+            patients = searching
+                    ? patientRepository.searchAfter(Status.ACTIVE, AliveStatus.yes, search, afterId, rows)
+                    : patientRepository.findByStatusAndAlivestatusAndIdGreaterThanOrderByIdAsc(
+                            Status.ACTIVE, AliveStatus.yes, afterId, rows);
+        } else {
+            patients = searching
+                    ? patientRepository.searchAfter(Status.ACTIVE, search, afterId, rows)
+                    : patientRepository.findByStatusAndIdGreaterThanOrderByIdAsc(Status.ACTIVE, afterId, rows);
+        }
+        return KeysetCursor.toDto(patients, ConvertToDto::convertToPatientDto, p -> KeysetCursor.ofId(p.getId()));
+    }
+
     public void deleteEquipment(Long id) {
-        equipmentRepository.deleteById(id);
+        if (equipmentRepository.existsById(id)) {
+            equipmentRepository.deleteById(id);
+            dashboardCounters.adjust(DashboardCounters.Counter.EQUIPMENT, -1);
+        }
     }
 
     public void deletePatient(long id) {
         Optional<Patient> patient = patientRepository.findById(id);
         Patient actual = patient.get();
+        boolean wasCounted = actual.getStatus() == Status.ACTIVE && actual.getAlivestatus() == AliveStatus.yes;
         actual.setAlivestatus(AliveStatus.no);
         actual.setMobileNumber(null);
         patientRepository.save(actual);
+        patientSpatialIndex.update(actual);
+        // Stop the patient's care plans from scheduling further visits
+        carePlanRepository.updateStatusByPatientId(actual.getId(), Status.INACTIVE);
+        if (wasCounted) {
+            dashboardCounters.adjust(DashboardCounters.Counter.PATIENTS, -1);
+        }
     }
 
     @Transactional
@@ -254,20 +362,16 @@ public class AdminService {
         existingPatient.setLongitude(updatedPatient.getLongitude());
 
         try {
-            patientRepository.save(existingPatient);
+            // Flushed here so a unique-mobile race surfaces as a conflict rather than at commit
+            patientRepository.saveAndFlush(existingPatient);
         } catch (DataIntegrityViolationException e) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Patient with this mobile number already exists");
         }
+        patientSpatialIndex.update(existingPatient);
     }
 
     public DashboardStatsDto dashboardStats() {
-        DashboardStatsDto dashboardStatsDto = new DashboardStatsDto();
-        dashboardStatsDto.setTotalPatients(patientRepository.count());
-        dashboardStatsDto.setActiveVolunteers(volunteerRepository.count());
-        dashboardStatsDto.setTotalVisitDone(reportRepository.countByStatus(Status.COMPLETED));
-        dashboardStatsDto.setPendingVisits(reportRepository.countByStatus(Status.PENDING));
-        dashboardStatsDto.setEquipmentsTotal(equipmentRepository.count());
-        return dashboardStatsDto;
+        return dashboardCounters.snapshot();
     }
 
     public Page<PatientVisitReportDto> getVisits(Status status, LocalDate startDate, LocalDate endDate, int page,
@@ -282,6 +386,24 @@ public class AdminService {
                 .map(ConvertToDto::convertToPatientVisitReportDto);
     }
 
+    /**
+     * Keyset form of {@link #getVisits}: newest visit first, continuing before the cursor.
+     * Visits without a visit date can't be placed on the key and are left out.
+     */
+    @Transactional
+    public CursorSliceDto<PatientVisitReportDto> getVisitsBefore(Status status, LocalDate startDate,
+            LocalDate endDate, String cursor, int size) {
+        KeysetCursor.DateKey before = KeysetCursor.beforeDate(cursor);
+        Pageable rows = KeysetCursor.firstRows(size);
+        LocalDate from = startDate != null ? startDate : LocalDate.of(1000, 1, 1);
+        LocalDate to = endDate != null ? endDate : LocalDate.of(9999, 12, 31);
+        Slice<PatientVisitReport> visits = status == null
+                ? reportRepository.findVisitsBefore(from, to, before.date(), before.id(), rows)
+                : reportRepository.findVisitsBefore(status, from, to, before.date(), before.id(), rows);
+        return KeysetCursor.toDto(visits, ConvertToDto::convertToPatientVisitReportDto,
+                v -> KeysetCursor.ofDate(v.getVisitDate(), v.getId()));
+    }
+
     public void deleteProcedure(Long id) {
         Optional<ProcedureDone> procedureDone = procedureRepository.findById(id);
         ProcedureDone actual = procedureDone.get();
@@ -292,9 +414,17 @@ public class AdminService {
     public void deleteVolunteer(Long id) {
         Optional<Volunteer> dbVol = volunteerRepository.findById(id);
         Volunteer actual = dbVol.get();
+        boolean wasActive = actual.getStatus() == Status.ACTIVE;
+        String email = actual.getEmail();
         actual.setStatus(Status.INACTIVE);
         actual.setEmail(null);
+        actual.setTokensValidAfter(Instant.now());
         volunteerRepository.save(actual);
+        userDetailsCache.evict(email);
+        tokenRevocationRegistry.refresh(id);
+        if (wasActive) {
+            dashboardCounters.adjust(DashboardCounters.Counter.VOLUNTEERS, -1);
+        }
     }
 
     public Page<VolunteerDto> getVolunteers(String search, Pageable pageable) {
@@ -314,6 +444,15 @@ public class AdminService {
         return volunteers.map(ConvertToDto::convertToVolunteerDto);
     }
 
+    public CursorSliceDto<VolunteerDto> getVolunteersAfter(String search, String cursor, int size) {
+        long afterId = KeysetCursor.afterId(cursor);
+        Pageable rows = KeysetCursor.firstRows(size);
+        Slice<Volunteer> volunteers = search == null || search.trim().isEmpty()
+                ? volunteerRepository.findByStatusAndIdGreaterThanOrderByIdAsc(Status.ACTIVE, afterId, rows)
+                : volunteerRepository.searchAfter(Status.ACTIVE, search, afterId, rows);
+        return KeysetCursor.toDto(volunteers, ConvertToDto::convertToVolunteerDto, v -> KeysetCursor.ofId(v.getId()));
+    }
+
     public Consumable addConsumable(Consumable consumable) {
         consumable.setStatus(Status.ACTIVE);
         return consumableRepository.save(consumable);
@@ -327,52 +466,99 @@ public class AdminService {
     }
 
     public void reduceStock(Long consumableId, int quantityUsed) {
-        Consumable consumable = consumableRepository.findById(consumableId)
-                .orElseThrow(() -> new RuntimeException("Consumable not found"));
-
-        if (consumable.getStockQuantity() < quantityUsed) {
-            throw new RuntimeException("Not enough stock for " + consumable.getName());
-        }
-
-        consumable.setStockQuantity(consumable.getStockQuantity() - quantityUsed);
-        consumableRepository.save(consumable);
+        consumableStockService.adjust(consumableId, quantityUsed, false);
     }
 
     @Transactional
     public Consumable updateStock(Long id, int quantity, boolean add) {
-        Consumable consumable = consumableRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Consumable not found"));
+        return consumableStockService.adjust(id, quantity, add);
+    }
 
-        if (add) {
-            consumable.setStockQuantity(consumable.getStockQuantity() + quantity);
-        } else {
-            if (consumable.getStockQuantity() < quantity) {
-                throw new RuntimeException("Not enough stock to subtract!");
-            }
-            consumable.setStockQuantity(consumable.getStockQuantity() - quantity);
+    @Transactional
+    public AssignmentResultDto assignVolunteerToPatients(Long volunteerId, List<Long> patientIds, LocalDate visitDate) {
+        if (visitDate == null) {
+            throw new IllegalArgumentException("At least one visit date is required");
         }
-
-        return consumableRepository.save(consumable);
+        return assignVolunteerToPatients(volunteerId, patientIds, List.of(visitDate));
     }
 
+    /**
+     * Creates one pending visit per patient and date with a fixed number of queries: the
+     * volunteer, all patients in one findAllById, the already-assigned (patient, date) pairs
+     * in one query, then batched inserts. Pairs the volunteer already has are skipped and
+     * counted as such, so re-sending the same assignment is harmless.
+     */
     @Transactional
-    public void assignVolunteerToPatients(Long volunteerId, List<Long> patientIds, LocalDate visitDate) {
+    public AssignmentResultDto assignVolunteerToPatients(Long volunteerId, List<Long> patientIds,
+            List<LocalDate> visitDates) {
+        if (patientIds == null || patientIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one patient is required");
+        }
+        if (visitDates == null || visitDates.isEmpty()) {
+            throw new IllegalArgumentException("At least one visit date is required");
+        }
+        if (patientIds.stream().anyMatch(Objects::isNull) || visitDates.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Patient ids and visit dates must not be null");
+        }
         Volunteer volunteer = volunteerRepository.findById(volunteerId)
                 .orElseThrow(() -> new RuntimeException("Volunteer not found"));
+        Set<Long> uniquePatientIds = new LinkedHashSet<>(patientIds);
+        Set<LocalDate> uniqueDates = new TreeSet<>(visitDates);
+
+        Map<Long, Patient> patients = patientRepository.findAllById(uniquePatientIds).stream()
+                .collect(Collectors.toMap(Patient::getId, Function.identity()));
+        for (Long patientId : uniquePatientIds) {
+            if (!patients.containsKey(patientId)) {
+                throw new RuntimeException("Patient not found with ID: " + patientId);
+            }
+        }
 
-        for (Long patientId : patientIds) {
-            Patient patient = patientRepository.findById(patientId)
-                    .orElseThrow(() -> new RuntimeException("Patient not found with ID: " + patientId));
-
-            // Create new visit report
-            PatientVisitReport visitReport = new PatientVisitReport();
-            visitReport.setVolunteer(volunteer);
-            visitReport.setPatient(patient);
-            visitReport.setVisitDate(visitDate);
-            visitReport.setStatus(Status.PENDING);
-
-            reportRepository.save(visitReport);
+        Set<String> alreadyAssigned = reportRepository
+                .findAssignedPatientDates(volunteerId, uniquePatientIds, uniqueDates).stream()
+                .map(row -> row[0] + "@" + row[1])
+                .collect(Collectors.toSet());
+
+        List<PatientVisitReport> visits = new ArrayList<>();
+        for (LocalDate date : uniqueDates) {
+            for (Long patientId : uniquePatientIds) {
+                if (alreadyAssigned.contains(patientId + "@" + date)) {
+                    continue;
+                }
+                PatientVisitReport visitReport = new PatientVisitReport();
+                visitReport.setVolunteer(volunteer);
+                visitReport.setPatient(patients.get(patientId));
+                visitReport.setVisitDate(date);
+                visitReport.setStatus(Status.PENDING);
+                visits.add(visitReport);
+            }
         }
+        reportRepository.saveAll(visits);
+        Map<LocalDate, Long> perDate = visits.stream()
+                .collect(Collectors.groupingBy(PatientVisitReport::getVisitDate, Collectors.counting()));
+        perDate.forEach((date, count) -> volunteerDashboardCounters.visitsAssigned(volunteerId, date, count));
+        for (LocalDate date : uniqueDates) {
+            visitRouteService.invalidate(volunteerId, date);
+        }
+        dashboardCounters.adjust(DashboardCounters.Counter.PENDING_VISITS, visits.size());
+        return new AssignmentResultDto(visits.size(), uniquePatientIds.size() * uniqueDates.size() - visits.size());
+    }
+
+    /**
+     * Clustered markers for the active patients inside the bounding box. A box crossing the
+     * antimeridian has to be requested as two boxes.
+     */
+    public List<MapMarkerDto> getPatientMap(double minLatitude, double minLongitude, double maxLatitude,
+            double maxLongitude, int zoom) {
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            throw new IllegalArgumentException("Bounding box minimum must not exceed its maximum");
+        }
+        if (minLatitude < -90 || maxLatitude > 90 || minLongitude < -180 || maxLongitude > 180) {
+            throw new IllegalArgumentException("Bounding box is outside valid coordinates");
+        }
+        if (zoom < 0 || zoom > 22) {
+            throw new IllegalArgumentException("Zoom must be between 0 and 22");
+        }
+        return patientSpatialIndex.markers(minLatitude, minLongitude, maxLatitude, maxLongitude, zoom);
     }
 
     public List<PatientDto> getAllPatientsForExport(String search) {
@@ -405,13 +591,11 @@ public class AdminService {
     }
 
     public List<ConsumableUsageSummaryDto> getConsumableUsageSummary(LocalDate startDate, LocalDate endDate) {
-        List<Object[]> rows = visitConsumableUsageRepository.findUsageSummary(startDate, endDate);
-        return rows.stream()
-                .map(r -> new ConsumableUsageSummaryDto(
-                        (Long) r[0],
-                        (String) r[1],
-                        (Long) r[2]))
-                .collect(Collectors.toList());
+        return consumableUsageRollup.summary(startDate, endDate);
+    }
+
+    public int rebuildConsumableUsageSummary() {
+        return consumableUsageRollup.rebuild();
     }
 
     public EquipmentType createType(String name, String description) {
@@ -425,62 +609,9 @@ public class AdminService {
         return equipmentTypeRepository.findAll();
     }
 
-    @Transactional
     public void submitVisitReport(Long visitId, List<Long> procedureIds, List<ConsumableUsageDto> consumableUsage,
             Status status, String notes) {
-        PatientVisitReport report = reportRepository.findById(visitId)
-                .orElseThrow(() -> new RuntimeException("Visit not found"));
-
-        report.setStatus(status);
-        report.setCompletedDate(LocalDate.now());
-        report.setNotes(notes);
-        // Set procedures
-        List<ProcedureDone> procedureDones = procedureRepository.findAllById(procedureIds);
-        report.setProceduresDone(procedureDones);
-
-        // Clear old consumables and rebuild
-        report.getConsumablesUsed().clear();
-
-        for (ConsumableUsageDto usageDto : consumableUsage) {
-
-            Long consumableId = usageDto.getConsumableId();
-            Integer qtyUsed = usageDto.getQuantity();
-            System.out.println("ConsumableId: " + consumableId + " QtyUsed: " + qtyUsed);
-            Consumable consumable = consumableRepository.findById(consumableId)
-                    .orElseThrow(() -> new RuntimeException("Consumable not found"));
-
-            if (consumable.getStockQuantity() < qtyUsed) {
-                throw new RuntimeException("Not enough stock for consumable: " + consumable.getName());
-            }
-
-            // Subtract stock
-            consumable.setStockQuantity(consumable.getStockQuantity() - qtyUsed);
-            consumableRepository.saveAndFlush(consumable);
-
-            // Create usage record
-            VisitConsumableUsage usage = new VisitConsumableUsage();
-            usage.setVisitReport(report);
-            usage.setConsumable(consumable);
-            usage.setQuantityUsed(qtyUsed);
-
-            report.getConsumablesUsed().add(usage);
-        }
-
-        reportRepository.save(report);
-
-        try {
-            Long userId = Long.valueOf(authenticationService.getIdFromToken(request).getBody());
-            User user = userRepository.findById(userId).orElse(null);
-            if (user != null) {
-                report.setSubmittedBy(user.getName());
-            }
-        } catch (Exception e) {
-            // Token might not be present or valid if called from internal context, but for
-            // API calls it should work.
-            // Failing silently for now or log it.
-            System.out.println("Could not set submittedBy: " + e.getMessage());
-        }
-        reportRepository.save(report);
+        visitCompletionService.complete(visitId, procedureIds, consumableUsage, status, notes);
     }
 
 }
@@ -0,0 +1,307 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.CarePlanDto;
+import com.erfan.cch.Dto.CarePlanRequest;
+import com.erfan.cch.Enums.AliveStatus;
+import com.erfan.cch.Enums.RecurrenceType;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.CarePlan;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.CarePlanRepository;
+import com.erfan.cch.Repo.PatientRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.Repo.VolunteerRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Turns care plans into pending visits a rolling horizon ahead. Each run continues from the
+ * plan's materializedThrough date, so visits are created once and admins can still edit or
+ * cancel individual ones. Dates a patient already has a visit on are skipped, and plans of
+ * patients who died or were removed, or of a fixed volunteer who left, are not scheduled.
+ * <p>
+ * The nightly job runs on every node and can overlap the manual trigger and new plans, so
+ * each run locks the patients it schedules before reading their visits: runs over the same
+ * patient take turns, and the later one sees what the earlier one committed.
+ */
+@Service
+public class CarePlanService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CarePlanService.class);
+
+    private final CarePlanRepository carePlanRepository;
+    private final PatientRepository patientRepository;
+    private final VolunteerRepository volunteerRepository;
+    private final PatientVisitReportRepository reportRepository;
+    private final VisitRouteService visitRouteService;
+    private final DashboardCounters dashboardCounters;
+    private final VolunteerDashboardCounters volunteerDashboardCounters;
+    private final int horizonDays;
+
+    public CarePlanService(CarePlanRepository carePlanRepository, PatientRepository patientRepository,
+            VolunteerRepository volunteerRepository, PatientVisitReportRepository reportRepository,
+            VisitRouteService visitRouteService, DashboardCounters dashboardCounters,
+            VolunteerDashboardCounters volunteerDashboardCounters, @Value("${cch.care-plan.horizon-days:14}") int horizonDays) {
+        this.carePlanRepository = carePlanRepository;
+        this.patientRepository = patientRepository;
+        this.volunteerRepository = volunteerRepository;
+        this.reportRepository = reportRepository;
+        this.visitRouteService = visitRouteService;
+        this.dashboardCounters = dashboardCounters;
+        this.volunteerDashboardCounters = volunteerDashboardCounters;
+        this.horizonDays = horizonDays;
+    }
+
+    @Transactional
+    public CarePlanDto createPlan(CarePlanRequest request) {
+        validate(request);
+        // Locked before anything else is read, like every other run over this patient
+        Patient patient = patientRepository.findLockedById(request.getPatientId())
+                .orElseThrow(() -> new RuntimeException("Patient not found"));
+        if (patient.getStatus() != Status.ACTIVE || patient.getAlivestatus() != AliveStatus.yes) {
+            throw new IllegalArgumentException("Care plans can only be created for active patients");
+        }
+        CarePlan plan = new CarePlan();
+        plan.setPatient(patient);
+        if (request.getVolunteerId() != null) {
+            Volunteer volunteer = volunteerRepository.findById(request.getVolunteerId())
+                    .orElseThrow(() -> new RuntimeException("Volunteer not found"));
+            if (volunteer.getStatus() != Status.ACTIVE) {
+                throw new IllegalArgumentException("Care plans can only be assigned to active volunteers");
+            }
+            plan.setVolunteer(volunteer);
+        } else {
+            plan.setSpecialization(request.getSpecialization().trim());
+        }
+        plan.setRecurrence(request.getRecurrence());
+        if (request.getRecurrence() == RecurrenceType.WEEKLY) {
+            plan.setDaysOfWeek(request.getDaysOfWeek());
+        } else {
+            plan.setIntervalDays(request.getIntervalDays());
+        }
+        plan.setStartDate(request.getStartDate());
+        plan.setEndDate(request.getEndDate());
+        plan.setStatus(Status.ACTIVE);
+        carePlanRepository.save(plan);
+
+        // Fill the horizon right away instead of waiting for the next scheduled run
+        materialize(List.of(plan), LocalDate.now());
+        return toDto(plan);
+    }
+
+    public List<CarePlanDto> getPlans() {
+        return carePlanRepository.findAll().stream()
+                .map(CarePlanService::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Stops future materialization. Visits that were already created are left as they are.
+     */
+    @Transactional
+    public void deactivatePlan(Long id) {
+        CarePlan plan = carePlanRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Care plan not found"));
+        plan.setStatus(Status.INACTIVE);
+        carePlanRepository.save(plan);
+    }
+
+    @Scheduled(cron = "${cch.care-plan.materialize-cron:0 15 2 * * *}")
+    @Transactional
+    public int materializeAll() {
+        return materialize(carePlanRepository.findSchedulable(Status.ACTIVE, Status.ACTIVE, AliveStatus.yes), LocalDate.now());
+    }
+
+    /**
+     * Creates the missing visits of the given plans up to today + horizon. Uses one query
+     * for the patients' existing visit dates, one for specialist volunteers and their load,
+     * and one batched insert, however many plans and dates are involved.
+     */
+    @Transactional
+    public int materialize(List<CarePlan> plans, LocalDate today) {
+        LocalDate horizonEnd = today.plusDays(horizonDays);
+        Map<CarePlan, List<LocalDate>> datesByPlan = new HashMap<>();
+        LocalDate from = null;
+        LocalDate to = null;
+        for (CarePlan plan : plans) {
+            LocalDate planFrom = latest(today, plan.getStartDate(),
+                    plan.getMaterializedThrough() == null ? null : plan.getMaterializedThrough().plusDays(1));
+            LocalDate planTo = plan.getEndDate() != null && plan.getEndDate().isBefore(horizonEnd)
+                    ? plan.getEndDate()
+                    : horizonEnd;
+            List<LocalDate> dates = new ArrayList<>();
+            for (LocalDate date = planFrom; !date.isAfter(planTo); date = date.plusDays(1)) {
+                if (plan.occursOn(date)) {
+                    dates.add(date);
+                }
+            }
+            if (dates.isEmpty()) {
+                continue;
+            }
+            datesByPlan.put(plan, dates);
+            from = from == null || planFrom.isBefore(from) ? planFrom : from;
+            to = to == null || planTo.isAfter(to) ? planTo : to;
+        }
+        if (datesByPlan.isEmpty()) {
+            return 0;
+        }
+
+        Set<Long> patientIds = datesByPlan.keySet().stream()
+                .map(plan -> plan.getPatient().getId())
+                .collect(Collectors.toCollection(TreeSet::new));
+        patientRepository.lockAllById(patientIds);
+        Set<String> taken = reportRepository.findPatientDatesBetween(patientIds, from, to).stream()
+                .map(row -> row[0] + "@" + row[1])
+                .collect(Collectors.toCollection(HashSet::new));
+        SpecialistPool specialists = loadSpecialists(datesByPlan.keySet(), from, to);
+
+        List<PatientVisitReport> visits = new ArrayList<>();
+        for (Map.Entry<CarePlan, List<LocalDate>> entry : datesByPlan.entrySet()) {
+            CarePlan plan = entry.getKey();
+            LocalDate firstUnassigned = null;
+            for (LocalDate date : entry.getValue()) {
+                // Two plans for the same patient share this set, so they never double-book a date
+                if (!taken.add(plan.getPatient().getId() + "@" + date)) {
+                    continue;
+                }
+                Volunteer volunteer = plan.getVolunteer() != null
+                        ? plan.getVolunteer()
+                        : specialists.leastBusy(plan.getSpecialization(), date);
+                if (volunteer == null) {
+                    taken.remove(plan.getPatient().getId() + "@" + date);
+                    firstUnassigned = firstUnassigned == null ? date : firstUnassigned;
+                    continue;
+                }
+                PatientVisitReport visit = new PatientVisitReport();
+                visit.setPatient(plan.getPatient());
+                visit.setVolunteer(volunteer);
+                visit.setVisitDate(date);
+                visit.setStatus(Status.PENDING);
+                visits.add(visit);
+            }
+            if (firstUnassigned != null) {
+                logger.warn("No active volunteer with specialization '{}' for care plan {} from {}",
+                        plan.getSpecialization(), plan.getId(), firstUnassigned);
+            }
+            // Retry dates that found no volunteer on the next run; everything before them is done
+            LocalDate last = entry.getValue().get(entry.getValue().size() - 1);
+            plan.setMaterializedThrough(firstUnassigned != null ? firstUnassigned.minusDays(1) : last);
+        }
+        reportRepository.saveAll(visits);
+        carePlanRepository.saveAll(datesByPlan.keySet());
+        for (PatientVisitReport visit : visits) {
+            visitRouteService.invalidate(visit.getVolunteer().getId(), visit.getVisitDate());
+            volunteerDashboardCounters.visitsAssigned(visit.getVolunteer().getId(), visit.getVisitDate(), 1);
+        }
+        dashboardCounters.adjust(DashboardCounters.Counter.PENDING_VISITS, visits.size());
+        logger.info("Materialized {} visits for {} care plans through {}", visits.size(), datesByPlan.size(), to);
+        return visits.size();
+    }
+
+    private SpecialistPool loadSpecialists(Set<CarePlan> plans, LocalDate from, LocalDate to) {
+        Set<String> specializations = plans.stream()
+                .filter(plan -> plan.getVolunteer() == null)
+                .map(CarePlan::getSpecialization)
+                .collect(Collectors.toSet());
+        if (specializations.isEmpty()) {
+            return new SpecialistPool(Map.of(), new HashMap<>());
+        }
+        Map<String, List<Volunteer>> bySpecialization = volunteerRepository
+                .findAllByStatusAndSpecializationIn(Status.ACTIVE, specializations).stream()
+                .collect(Collectors.groupingBy(Volunteer::getSpecialization));
+        Set<Long> volunteerIds = bySpecialization.values().stream()
+                .flatMap(List::stream)
+                .map(Volunteer::getId)
+                .collect(Collectors.toSet());
+        Map<String, Long> load = new HashMap<>();
+        if (!volunteerIds.isEmpty()) {
+            for (Object[] row : reportRepository.countVisitsPerVolunteerAndDate(volunteerIds, from, to)) {
+                load.put(row[0] + "@" + row[1], (Long) row[2]);
+            }
+        }
+        return new SpecialistPool(bySpecialization, load);
+    }
+
+    private static LocalDate latest(LocalDate first, LocalDate... others) {
+        LocalDate latest = first;
+        for (LocalDate other : others) {
+            if (other != null && other.isAfter(latest)) {
+                latest = other;
+            }
+        }
+        return latest;
+    }
+
+    private static void validate(CarePlanRequest request) {
+        if (request.getPatientId() == null || request.getStartDate() == null || request.getRecurrence() == null) {
+            throw new IllegalArgumentException("patientId, startDate and recurrence are required");
+        }
+        if (request.getVolunteerId() == null
+                && (request.getSpecialization() == null || request.getSpecialization().isBlank())) {
+            throw new IllegalArgumentException("Either volunteerId or specialization is required");
+        }
+        if (request.getRecurrence() == RecurrenceType.WEEKLY
+                && (request.getDaysOfWeek() == null || request.getDaysOfWeek().isEmpty())) {
+            throw new IllegalArgumentException("daysOfWeek is required for a weekly plan");
+        }
+        if (request.getRecurrence() == RecurrenceType.EVERY_N_DAYS
+                && (request.getIntervalDays() == null || request.getIntervalDays() < 1)) {
+            throw new IllegalArgumentException("intervalDays must be at least 1");
+        }
+        if (request.getEndDate() != null && request.getEndDate().isBefore(request.getStartDate())) {
+            throw new IllegalArgumentException("endDate must not be before startDate");
+        }
+    }
+
+    private static CarePlanDto toDto(CarePlan plan) {
+        return new CarePlanDto(
+                plan.getId(),
+                plan.getPatient().getId(),
+                plan.getPatient().getName(),
+                plan.getVolunteer() != null ? plan.getVolunteer().getId() : null,
+                plan.getVolunteer() != null ? plan.getVolunteer().getName() : null,
+                plan.getSpecialization(),
+                plan.getRecurrence(),
+                plan.getRecurrence() == RecurrenceType.WEEKLY ? plan.getDaysOfWeek() : null,
+                plan.getIntervalDays(),
+                plan.getStartDate(),
+                plan.getEndDate(),
+                plan.getMaterializedThrough(),
+                plan.getStatus());
+    }
+
+    /**
+     * Active volunteers per specialization with their visit count per date, updated as
+     * visits are handed out so one run spreads the work evenly.
+     */
+    private record SpecialistPool(Map<String, List<Volunteer>> bySpecialization, Map<String, Long> load) {
+
+        Volunteer leastBusy(String specialization, LocalDate date) {
+            Volunteer chosen = bySpecialization.getOrDefault(specialization, List.of()).stream()
+                    .min(Comparator.comparingLong((Volunteer v) -> load.getOrDefault(v.getId() + "@" + date, 0L))
+                            .thenComparing(Volunteer::getId))
+                    .orElse(null);
+            if (chosen != null) {
+                load.merge(chosen.getId() + "@" + date, 1L, Long::sum);
+            }
+            return chosen;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.ConsumableStockRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class ConsumableStockService {
+
+    private final ConsumableRepository consumableRepository;
+    private final ConsumableStockRepository consumableStockRepository;
+
+    public ConsumableStockService(ConsumableRepository consumableRepository,
+            ConsumableStockRepository consumableStockRepository) {
+        this.consumableRepository = consumableRepository;
+        this.consumableStockRepository = consumableStockRepository;
+    }
+
+    /**
+     * Folds the usage lines into one quantity per consumable. Sorted by id so concurrent
+     * deductions always lock rows in the same order.
+     */
+    public Map<Long, Integer> aggregate(List<ConsumableUsageDto> consumableUsage) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        if (consumableUsage == null) {
+            return quantities;
+        }
+        for (ConsumableUsageDto usageDto : consumableUsage) {
+            Integer qtyUsed = usageDto.getQuantity();
+            if (usageDto.getConsumableId() == null || qtyUsed == null || qtyUsed < 0) {
+                throw new IllegalArgumentException("Invalid consumable usage: " + usageDto.getConsumableId());
+            }
+            if (qtyUsed > 0) {
+                quantities.merge(usageDto.getConsumableId(), qtyUsed, Integer::sum);
+            }
+        }
+        return quantities;
+    }
+
+    /**
+     * What a submission takes from stock: the new quantities minus what the visit's stored
+     * usage already took. Negative entries go back to stock; unchanged ones are dropped, so an
+     * identical resubmission leaves stock alone. Sorted by id like {@link #aggregate}.
+     */
+    public static Map<Long, Integer> change(Map<Long, Integer> quantities, Map<Long, Integer> previous) {
+        Map<Long, Integer> change = new TreeMap<>(quantities);
+        previous.forEach((consumableId, qty) -> change.merge(consumableId, -qty, Integer::sum));
+        change.values().removeIf(qty -> qty == 0);
+        return change;
+    }
+
+    /**
+     * Current usage rows of the given visits, as visit id to consumable id to quantity.
+     */
+    public Map<Long, Map<Long, Integer>> usages(Collection<Long> visitIds) {
+        return consumableStockRepository.findUsages(visitIds);
+    }
+
+    /**
+     * Loads every consumable once, validates stock in memory, then applies all deductions
+     * in one conditional batch update; negative quantities are given back. Must run inside
+     * the caller's transaction so a failed row rolls back the whole report.
+     */
+    @Transactional
+    public void deduct(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        deduct(quantities, loadAll(quantities.keySet()));
+    }
+
+    public Map<Long, Consumable> loadAll(Collection<Long> consumableIds) {
+        return consumableRepository.findAllById(consumableIds)
+                .stream()
+                .collect(Collectors.toMap(Consumable::getId, Function.identity()));
+    }
+
+    /**
+     * Same as {@link #deduct(Map)} for callers that already loaded the consumables.
+     */
+    @Transactional
+    public void deduct(Map<Long, Integer> quantities, Map<Long, Consumable> consumables) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        quantities.forEach((consumableId, qtyUsed) -> {
+            Consumable consumable = consumables.get(consumableId);
+            if (consumable == null) {
+                throw new RuntimeException("Consumable not found");
+            }
+            if (consumable.getStockQuantity() == null || consumable.getStockQuantity() < qtyUsed) {
+                throw new RuntimeException("Not enough stock for consumable: " + consumable.getName());
+            }
+        });
+
+        int[] updated = consumableStockRepository.deductAll(quantities);
+        List<Long> ids = new ArrayList<>(quantities.keySet());
+        for (int i = 0; i < updated.length; i++) {
+            // Stock changed between the read and the update (another submission got there first)
+            if (updated[i] == 0) {
+                throw new RuntimeException("Not enough stock for consumable: " + consumables.get(ids.get(i)).getName());
+            }
+        }
+    }
+
+    /**
+     * Adds or subtracts stock as a single atomic SQL delta, so concurrent callers can't
+     * overwrite each other's changes the way a read-modify-write would.
+     */
+    @Transactional
+    public Consumable adjust(Long consumableId, int quantity, boolean add) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        int updated = add
+                ? consumableStockRepository.add(consumableId, quantity)
+                : consumableStockRepository.subtract(consumableId, quantity);
+        if (updated == 0) {
+            if (!consumableRepository.existsById(consumableId)) {
+                throw new RuntimeException("Consumable not found");
+            }
+            throw new RuntimeException("Not enough stock to subtract!");
+        }
+        // Read after the update so the returned entity reflects the new stock level
+        return consumableRepository.findById(consumableId)
+                .orElseThrow(() -> new RuntimeException("Consumable not found"));
+    }
+
+    /**
+     * Replaces the usage rows of a visit with the given quantities in one batch insert.
+     */
+    @Transactional
+    public void replaceUsage(Long visitId, Map<Long, Integer> quantities) {
+        consumableStockRepository.deleteUsages(visitId);
+        if (!quantities.isEmpty()) {
+            consumableStockRepository.insertUsages(visitId, quantities);
+        }
+    }
+
+    /**
+     * Batch form of {@link #replaceUsage}: one delete batch and one insert batch for all visits.
+     */
+    @Transactional
+    public void replaceUsages(Map<Long, Map<Long, Integer>> quantitiesByVisit) {
+        if (quantitiesByVisit.isEmpty()) {
+            return;
+        }
+        consumableStockRepository.deleteUsages(quantitiesByVisit.keySet());
+        consumableStockRepository.insertUsages(quantitiesByVisit);
+    }
+}
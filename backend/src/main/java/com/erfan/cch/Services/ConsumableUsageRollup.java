@@ -0,0 +1,108 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageSummaryDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Repo.ConsumableStockRepository;
+import com.erfan.cch.Repo.ConsumableUsageDailyRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Consumable usage of completed visits, summed per completion day and consumable in the
+ * consumable_usage_daily table. Submissions move their usage into (and, when resubmitted,
+ * out of) the rollup in their own transaction, so range summaries read a few rows per day
+ * instead of joining every usage row to its visit.
+ */
+@Service
+public class ConsumableUsageRollup {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsumableUsageRollup.class);
+
+    // The range of a MySQL DATE column; stands in for an open bound
+    private static final LocalDate FIRST_DAY = LocalDate.of(1000, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(9999, 12, 31);
+
+    private final ConsumableStockRepository consumableStockRepository;
+    private final ConsumableUsageDailyRepository consumableUsageDailyRepository;
+
+    public ConsumableUsageRollup(ConsumableStockRepository consumableStockRepository,
+            ConsumableUsageDailyRepository consumableUsageDailyRepository) {
+        this.consumableStockRepository = consumableStockRepository;
+        this.consumableUsageDailyRepository = consumableUsageDailyRepository;
+    }
+
+    /**
+     * Moves submitted usage into the rollup. Must run before the visits' usage rows are
+     * replaced, since the usage of a visit that was already completed is read back and taken
+     * off the day it was counted on.
+     *
+     * @param previouslyCompleted visit id to the day it is currently counted on, for the
+     *                            resubmitted visits that were already completed
+     * @param completedUsage      visit id to consumable quantities, for the submissions that
+     *                            complete their visit
+     * @param day                 the completion day of these submissions
+     */
+    @Transactional
+    public void replaceUsage(Map<Long, LocalDate> previouslyCompleted, Map<Long, Map<Long, Integer>> completedUsage,
+            LocalDate day) {
+        Map<LocalDate, Map<Long, Long>> deltas = new TreeMap<>();
+        if (!previouslyCompleted.isEmpty()) {
+            consumableStockRepository.findUsages(previouslyCompleted.keySet()).forEach((visitId, quantities) ->
+                    quantities.forEach((consumableId, qty) -> deltas
+                            .computeIfAbsent(previouslyCompleted.get(visitId), d -> new TreeMap<>())
+                            .merge(consumableId, (long) -qty, Long::sum)));
+        }
+        completedUsage.values().forEach(quantities -> quantities.forEach((consumableId, qty) -> deltas
+                .computeIfAbsent(day, d -> new TreeMap<>())
+                .merge(consumableId, (long) qty, Long::sum)));
+        // An unchanged resubmission on the same day cancels out and writes nothing
+        deltas.values().forEach(quantities -> quantities.values().removeIf(qty -> qty == 0));
+        consumableStockRepository.addDailyUsage(deltas);
+    }
+
+    /**
+     * Usage per consumable between start and end inclusive; either bound may be null.
+     */
+    public List<ConsumableUsageSummaryDto> summary(LocalDate startDate, LocalDate endDate) {
+        return consumableUsageDailyRepository.findUsageSummary(
+                        startDate == null ? FIRST_DAY : startDate,
+                        endDate == null ? LAST_DAY : endDate)
+                .stream()
+                .map(r -> new ConsumableUsageSummaryDto((Long) r[0], (String) r[1], (Long) r[2]))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Fills the rollup from existing usage the first time the application starts with it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        if (consumableStockRepository.hasDailyUsage() || !consumableStockRepository.hasUsages()) {
+            return;
+        }
+        logger.info("Consumable usage rollup is empty, backfilling it from visit usage");
+        rebuild();
+    }
+
+    /**
+     * Recomputes the rollup from the usage rows. Safe to repeat; used for the first backfill
+     * and to repair the rollup after data is changed outside the application.
+     */
+    @Transactional
+    public int rebuild() {
+        int rows = consumableStockRepository.rebuildDailyUsage(Status.COMPLETED.ordinal());
+        logger.info("Rebuilt consumable usage rollup with {} rows", rows);
+        return rows;
+    }
+}
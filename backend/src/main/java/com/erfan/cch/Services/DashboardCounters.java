@@ -0,0 +1,108 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.DashboardStatsDto;
+import com.erfan.cch.Enums.AliveStatus;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Repo.EquipmentRepository;
+import com.erfan.cch.Repo.PatientRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.Repo.VolunteerRepository;
+import com.erfan.cch.utils.TransactionCallbacks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The admin dashboard totals, kept in memory. Services report each change as a delta,
+ * which is applied when their transaction commits (or straight away outside one), so the
+ * dashboard is a read of five longs. A periodic recount from the database corrects any
+ * drift, e.g. from changes made outside the application.
+ */
+@Service
+public class DashboardCounters {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardCounters.class);
+
+    public enum Counter {
+        // Active, alive patients
+        PATIENTS,
+        // Active volunteers
+        VOLUNTEERS,
+        EQUIPMENT,
+        COMPLETED_VISITS,
+        PENDING_VISITS
+    }
+
+    private final PatientRepository patientRepository;
+    private final VolunteerRepository volunteerRepository;
+    private final EquipmentRepository equipmentRepository;
+    private final PatientVisitReportRepository reportRepository;
+
+    private final Map<Counter, AtomicLong> counters = new EnumMap<>(Counter.class);
+
+    public DashboardCounters(PatientRepository patientRepository, VolunteerRepository volunteerRepository,
+            EquipmentRepository equipmentRepository, PatientVisitReportRepository reportRepository) {
+        this.patientRepository = patientRepository;
+        this.volunteerRepository = volunteerRepository;
+        this.equipmentRepository = equipmentRepository;
+        this.reportRepository = reportRepository;
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new AtomicLong());
+        }
+    }
+
+    public DashboardStatsDto snapshot() {
+        return new DashboardStatsDto(
+                counters.get(Counter.PATIENTS).get(),
+                counters.get(Counter.VOLUNTEERS).get(),
+                counters.get(Counter.EQUIPMENT).get(),
+                counters.get(Counter.COMPLETED_VISITS).get(),
+                counters.get(Counter.PENDING_VISITS).get());
+    }
+
+    public void adjust(Counter counter, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        // A rolled back change must not show up on the dashboard
+        TransactionCallbacks.afterCommit(() -> counters.get(counter).addAndGet(delta));
+    }
+
+    /**
+     * Records a visit moving from one status to another; null stands for a visit that
+     * didn't exist before.
+     */
+    public void visitStatusChanged(Status from, Status to) {
+        if (from == to) {
+            return;
+        }
+        adjust(Counter.PENDING_VISITS, (to == Status.PENDING ? 1 : 0) - (from == Status.PENDING ? 1 : 0));
+        adjust(Counter.COMPLETED_VISITS, (to == Status.COMPLETED ? 1 : 0) - (from == Status.COMPLETED ? 1 : 0));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${cch.dashboard.reconcile-interval-ms:600000}",
+            initialDelayString = "${cch.dashboard.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        Map<Counter, Long> actual = new EnumMap<>(Counter.class);
+        actual.put(Counter.PATIENTS, patientRepository.countByStatusAndAlivestatus(Status.ACTIVE, AliveStatus.yes));
+        actual.put(Counter.VOLUNTEERS, volunteerRepository.countByStatus(Status.ACTIVE));
+        actual.put(Counter.EQUIPMENT, equipmentRepository.count());
+        actual.put(Counter.COMPLETED_VISITS, reportRepository.countByStatus(Status.COMPLETED));
+        actual.put(Counter.PENDING_VISITS, reportRepository.countByStatus(Status.PENDING));
+        // A change committing while the counts run can be off by one until the next pass
+        actual.forEach((counter, count) -> {
+            long previous = counters.get(counter).getAndSet(count);
+            if (previous != count) {
+                logger.info("Dashboard counter {} corrected from {} to {}", counter, previous, count);
+            }
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Models.IdempotencyRecord;
+import com.erfan.cch.Repo.IdempotencyRecordRepository;
+import com.erfan.cch.utils.TransactionCallbacks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Remembers the outcome of requests sent with an Idempotency-Key. Recent keys are answered
+ * from a bounded in-memory LRU without touching the database; older ones fall back to the
+ * idempotency_record table, whose unique (principal, key) index also stops two concurrent
+ * retries from both going through. Stored keys are kept for at least the configured TTL and
+ * purged by a scheduled delete after that.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final int maxSize;
+    private final Duration ttl;
+
+    // Access-ordered so the least recently used key is dropped first once maxSize is reached
+    private final LinkedHashMap<String, StoredResult> results;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+            @Value("${cch.idempotency.cache-size:10000}") int maxSize,
+            @Value("${cch.idempotency.ttl-hours:48}") long ttlHours) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.maxSize = maxSize;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResult> eldest) {
+                return size() > IdempotencyService.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the stored response if this principal already completed a request with the key.
+     * Reusing a key for a different visit is a client bug and is rejected.
+     */
+    public Optional<String> findReplay(Long principalId, String key, Long visitId) {
+        validate(key);
+        String cacheKey = cacheKey(principalId, key);
+        StoredResult stored;
+        synchronized (results) {
+            stored = results.get(cacheKey);
+        }
+        if (stored == null) {
+            Optional<IdempotencyRecord> record = idempotencyRecordRepository
+                    .findByPrincipalIdAndIdempotencyKey(principalId, key);
+            if (record.isEmpty()) {
+                return Optional.empty();
+            }
+            stored = new StoredResult(record.get().getVisitId(), record.get().getResponse());
+            remember(cacheKey, stored);
+        }
+        if (!stored.visitId().equals(visitId)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for another visit");
+        }
+        return Optional.of(stored.response());
+    }
+
+    /**
+     * Claims the key inside the caller's transaction. The row only becomes visible, and the
+     * in-memory entry is only added, once that transaction commits.
+     */
+    public void record(Long principalId, String key, Long visitId, String response) {
+        validate(key);
+        try {
+            idempotencyRecordRepository.saveAndFlush(
+                    new IdempotencyRecord(principalId, key, visitId, response, Instant.now().plus(ttl)));
+        } catch (DataIntegrityViolationException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "A request with this Idempotency-Key is already being processed");
+        }
+        String cacheKey = cacheKey(principalId, key);
+        StoredResult stored = new StoredResult(visitId, response);
+        TransactionCallbacks.afterCommit(() -> remember(cacheKey, stored));
+    }
+
+    /**
+     * Deletes the records whose TTL has passed. A key retried after this is treated as new.
+     */
+    @Scheduled(cron = "${cch.idempotency.purge-cron:0 0 3 * * *}")
+    public int purgeExpired() {
+        Instant now = Instant.now();
+        int deleted = idempotencyRecordRepository.deleteExpired(now, now.minus(ttl));
+        logger.info("Purged {} expired idempotency records", deleted);
+        return deleted;
+    }
+
+    private void remember(String cacheKey, StoredResult stored) {
+        synchronized (results) {
+            results.put(cacheKey, stored);
+        }
+    }
+
+    private static void validate(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    private static String cacheKey(Long principalId, String key) {
+        return principalId + ":" + key;
+    }
+
+    private record StoredResult(Long visitId, String response) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.RegistrationBucketDto;
+import com.erfan.cch.Repo.PatientRepository;
+import com.erfan.cch.utils.TransactionCallbacks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Patient registrations per day, held as running totals: {@code totals[i]} is the number of
+ * patients registered from the first registration day up to and including day i. Any date
+ * range is then a subtraction of two entries. Registrations land on today, the last day, so
+ * recording one is a single increment; the array grows by doubling as days pass.
+ */
+@Service
+public class PatientRegistrationSeries {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientRegistrationSeries.class);
+
+    private final PatientRepository patientRepository;
+
+    private LocalDate origin;
+    private long[] totals = new long[0];
+    // Index of the last day with a meaningful total; later slots are spare capacity
+    private int lastDay = -1;
+
+    public PatientRegistrationSeries(PatientRepository patientRepository) {
+        this.patientRepository = patientRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${cch.patient-series.reload-cron:0 45 2 * * *}")
+    public void reload() {
+        List<Object[]> rows = patientRepository.countRegistrationsPerDate();
+        synchronized (this) {
+            origin = null;
+            totals = new long[0];
+            lastDay = -1;
+            for (Object[] row : rows) {
+                addLocked((LocalDate) row[0], (Long) row[1]);
+            }
+        }
+        logger.info("Loaded patient registrations for {} days", lastDay + 1);
+    }
+
+    public void recordRegistration(LocalDate date) {
+        if (date != null) {
+            TransactionCallbacks.afterCommit(() -> add(date, 1));
+        }
+    }
+
+    /**
+     * Patients registered between start and end inclusive; either bound may be null for an
+     * open range.
+     */
+    public synchronized long count(LocalDate start, LocalDate end) {
+        if (origin == null) {
+            return 0;
+        }
+        long from = start == null ? 0 : Math.max(0, ChronoUnit.DAYS.between(origin, start));
+        long to = end == null ? lastDay : Math.min(lastDay, ChronoUnit.DAYS.between(origin, end));
+        if (from > to) {
+            return 0;
+        }
+        return totals[(int) to] - (from == 0 ? 0 : totals[(int) from - 1]);
+    }
+
+    public List<RegistrationBucketDto> weekly(LocalDate start, LocalDate end) {
+        return buckets(start.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)), end, day -> day.plusWeeks(1));
+    }
+
+    public List<RegistrationBucketDto> monthly(LocalDate start, LocalDate end) {
+        return buckets(start.withDayOfMonth(1), end, day -> day.plusMonths(1));
+    }
+
+    private List<RegistrationBucketDto> buckets(LocalDate first, LocalDate end, UnaryOperator<LocalDate> next) {
+        List<RegistrationBucketDto> buckets = new ArrayList<>();
+        for (LocalDate periodStart = first; !periodStart.isAfter(end); periodStart = next.apply(periodStart)) {
+            LocalDate periodEnd = next.apply(periodStart).minusDays(1);
+            buckets.add(new RegistrationBucketDto(periodStart, periodEnd, count(periodStart, periodEnd)));
+        }
+        return buckets;
+    }
+
+    private synchronized void add(LocalDate date, long registrations) {
+        addLocked(date, registrations);
+    }
+
+    private void addLocked(LocalDate date, long registrations) {
+        if (origin == null) {
+            origin = date;
+        } else if (date.isBefore(origin)) {
+            // Backdated registration: shift everything so the new day becomes the origin
+            int shift = Math.toIntExact(ChronoUnit.DAYS.between(date, origin));
+            long[] shifted = new long[Math.max(16, lastDay + 1 + shift)];
+            System.arraycopy(totals, 0, shifted, shift, lastDay + 1);
+            totals = shifted;
+            lastDay += shift;
+            origin = date;
+        }
+        int day = Math.toIntExact(ChronoUnit.DAYS.between(origin, date));
+        if (day > lastDay) {
+            if (day >= totals.length) {
+                totals = Arrays.copyOf(totals, Math.max(16, Math.max(day + 1, totals.length * 2)));
+            }
+            long carried = lastDay < 0 ? 0 : totals[lastDay];
+            Arrays.fill(totals, lastDay + 1, day + 1, carried);
+            lastDay = day;
+        }
+        // Only days from the registration onwards include it: one slot for a registration made today
+        for (int i = day; i <= lastDay; i++) {
+            totals[i] += registrations;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Service;
 public class PatientService {
 
     private final PatientRepository patientRepository;
+    private final PatientSpatialIndex patientSpatialIndex;
 
     public PatientLocationDto updateLocation(Long id, PatientLocationDto dto) {
         Patient patient = patientRepository.findById(id)
@@ -21,6 +22,7 @@ public class PatientService {
         patient.setAddress(dto.getAddress());
 
         patientRepository.save(patient);
+        patientSpatialIndex.update(patient);
 
         return dto;
     }
@@ -0,0 +1,427 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.MapMarkerDto;
+import com.erfan.cch.Enums.AliveStatus;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.Repo.PatientRepository;
+import com.erfan.cch.utils.GeoUtils;
+import com.erfan.cch.utils.TransactionCallbacks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory uniform grid over the coordinates of active, alive patients. Nearest-neighbour
+ * and radius queries only visit the cells around the query point instead of scanning every
+ * patient. Loaded once at startup and kept current by the services that change a patient's
+ * location or status.
+ *
+ * <p>For the map, coarser grids matching each zoom level keep a count and coordinate sum
+ * per cell, so a viewport's clusters are read straight from those cells rather than
+ * computed from the patients inside it.
+ */
+@Service
+public class PatientSpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientSpatialIndex.class);
+
+    private static final double KM_PER_DEGREE_LAT = Math.PI * GeoUtils.EARTH_RADIUS_KM / 180;
+    // ~1.1 km per cell side at the equator: a few dozen patients per cell in a dense town
+    static final double CELL_DEGREES = 0.01;
+    // Clusters per map tile side (256px tiles: one cluster per ~32px square)
+    static final int CLUSTER_CELLS_PER_TILE = 8;
+    // Above this zoom a viewport holds few enough patients to show them individually
+    public static final int MAX_CLUSTER_ZOOM = 14;
+    // A box past MAX_CLUSTER_ZOOM with more patients than this gets the MAX_CLUSTER_ZOOM clusters instead
+    public static final int MAX_POINT_MARKERS = 500;
+
+    private final PatientRepository patientRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, List<Point>> cells = new HashMap<>();
+    private final Map<Long, Point> byPatient = new HashMap<>();
+    @SuppressWarnings("unchecked")
+    private final Map<Long, Cluster>[] clustersByZoom = new Map[MAX_CLUSTER_ZOOM + 1];
+
+    public PatientSpatialIndex(PatientRepository patientRepository) {
+        this.patientRepository = patientRepository;
+        for (int zoom = 0; zoom <= MAX_CLUSTER_ZOOM; zoom++) {
+            clustersByZoom[zoom] = new HashMap<>();
+        }
+    }
+
+    public record Neighbor(Long patientId, double latitude, double longitude, double distanceKm) {
+    }
+
+    private record Point(Long patientId, double latitude, double longitude, long cell) {
+    }
+
+    private static final class Cluster {
+        int count;
+        double latitudeSum;
+        double longitudeSum;
+        // The last patient added, or the one left after removals; only reported when count is 1
+        Long patientId;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        List<Object[]> rows = patientRepository.findLocations(Status.ACTIVE, AliveStatus.yes);
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+            byPatient.clear();
+            for (Map<Long, Cluster> clusters : clustersByZoom) {
+                clusters.clear();
+            }
+            for (Object[] row : rows) {
+                put((Long) row[0], (Double) row[1], (Double) row[2]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Indexed {} patient locations", rows.size());
+    }
+
+    /**
+     * Re-indexes a patient after a save: active, alive patients with coordinates are
+     * (re)placed on the grid, everyone else is dropped from it. Inside a transaction the
+     * change is applied once it commits, so a rolled back save leaves the index untouched.
+     */
+    public void update(Patient patient) {
+        boolean indexable = patient.getStatus() == Status.ACTIVE
+                && patient.getAlivestatus() == AliveStatus.yes
+                && patient.getLatitude() != null
+                && patient.getLongitude() != null;
+        Long patientId = patient.getId();
+        Double latitude = patient.getLatitude();
+        Double longitude = patient.getLongitude();
+        TransactionCallbacks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                removeLocked(patientId);
+                if (indexable) {
+                    put(patientId, latitude, longitude);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void remove(Long patientId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(patientId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byPatient.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The k patients closest to the point, nearest first. Searches rings of cells outwards
+     * and stops once no unsearched cell can hold anything closer than the current k-th hit.
+     */
+    public List<Neighbor> nearest(double latitude, double longitude, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        PriorityQueue<Neighbor> best = new PriorityQueue<>(
+                Comparator.comparingDouble(Neighbor::distanceKm).reversed());
+        long centerRow = row(latitude);
+        long centerCol = col(longitude);
+        lock.readLock().lock();
+        try {
+            int remaining = byPatient.size();
+            long visitedCells = 0;
+            for (int ring = 0; remaining > 0; ring++) {
+                visitedCells += ring == 0 ? 1 : 8L * ring;
+                if (visitedCells > byPatient.size() + 64) {
+                    // Query far from the data: checking every point is now cheaper than more rings
+                    best.clear();
+                    for (Point point : byPatient.values()) {
+                        offer(best, k, point, GeoUtils.distanceKm(latitude, longitude, point.latitude, point.longitude));
+                    }
+                    break;
+                }
+                for (long r = centerRow - ring; r <= centerRow + ring; r++) {
+                    boolean edgeRow = r == centerRow - ring || r == centerRow + ring;
+                    long step = edgeRow ? 1 : 2L * ring;
+                    for (long c = centerCol - ring; c <= centerCol + ring; c += Math.max(step, 1)) {
+                        List<Point> cell = cells.get(key(r, c));
+                        if (cell == null) {
+                            continue;
+                        }
+                        remaining -= cell.size();
+                        for (Point point : cell) {
+                            offer(best, k, point, GeoUtils.distanceKm(latitude, longitude, point.latitude, point.longitude));
+                        }
+                    }
+                }
+                if (best.size() == k && best.peek().distanceKm() <= searchedRadiusKm(latitude, ring)) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Neighbor> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(Neighbor::distanceKm));
+        return result;
+    }
+
+    /**
+     * Every indexed patient within radiusKm of the point, nearest first.
+     */
+    public List<Neighbor> withinRadius(double latitude, double longitude, double radiusKm) {
+        double latSpan = radiusKm / KM_PER_DEGREE_LAT;
+        double maxLat = Math.min(89.9, Math.abs(latitude) + latSpan);
+        double lonSpan = Math.min(180, radiusKm / (KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(maxLat))));
+        List<Neighbor> result = new ArrayList<>();
+        long firstRow = row(latitude - latSpan);
+        long lastRow = row(latitude + latSpan);
+        long firstCol = col(longitude - lonSpan);
+        long lastCol = col(longitude + lonSpan);
+        lock.readLock().lock();
+        try {
+            if ((lastRow - firstRow + 1) * (lastCol - firstCol + 1) > byPatient.size() + 64L) {
+                // Radius covers more cells than there are patients: a plain scan is cheaper
+                for (Point point : byPatient.values()) {
+                    collectWithin(result, point, latitude, longitude, radiusKm);
+                }
+            } else {
+                for (long r = firstRow; r <= lastRow; r++) {
+                    for (long c = firstCol; c <= lastCol; c++) {
+                        List<Point> cell = cells.get(key(r, c));
+                        if (cell != null) {
+                            for (Point point : cell) {
+                                collectWithin(result, point, latitude, longitude, radiusKm);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparingDouble(Neighbor::distanceKm));
+        return result;
+    }
+
+    /**
+     * Markers for the patients inside a bounding box at a map zoom level. Up to
+     * MAX_CLUSTER_ZOOM they come from the precomputed cluster cells overlapping the box, so
+     * the response size depends on the viewport, not on how many patients it covers. Past it
+     * each patient is its own marker, unless the box holds more than MAX_POINT_MARKERS of
+     * them, in which case it is answered with the MAX_CLUSTER_ZOOM clusters.
+     */
+    public List<MapMarkerDto> markers(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+            int zoom) {
+        List<MapMarkerDto> markers = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (zoom > MAX_CLUSTER_ZOOM) {
+                long cellCount = (row(maxLatitude) - row(minLatitude) + 1)
+                        * (col(maxLongitude) - col(minLongitude) + 1);
+                Iterable<Point> candidates = cellCount > cells.size()
+                        ? byPatient.values()
+                        : cellsInBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+                for (Point point : candidates) {
+                    if (point.latitude >= minLatitude && point.latitude <= maxLatitude
+                            && point.longitude >= minLongitude && point.longitude <= maxLongitude) {
+                        markers.add(new MapMarkerDto(point.latitude, point.longitude, 1, point.patientId));
+                        if (markers.size() > MAX_POINT_MARKERS) {
+                            break;
+                        }
+                    }
+                }
+                if (markers.size() <= MAX_POINT_MARKERS) {
+                    return markers;
+                }
+                markers.clear();
+            }
+            int level = Math.max(Math.min(zoom, MAX_CLUSTER_ZOOM), 0);
+            double cellDegrees = clusterCellDegrees(level);
+            Map<Long, Cluster> clusters = clustersByZoom[level];
+            long firstRow = (long) Math.floor(minLatitude / cellDegrees);
+            long lastRow = (long) Math.floor(maxLatitude / cellDegrees);
+            long firstCol = (long) Math.floor(minLongitude / cellDegrees);
+            long lastCol = (long) Math.floor(maxLongitude / cellDegrees);
+            if ((lastRow - firstRow + 1) * (lastCol - firstCol + 1) > clusters.size()) {
+                // The box spans more cells than are occupied: walk the occupied ones instead
+                for (Map.Entry<Long, Cluster> entry : clusters.entrySet()) {
+                    long r = entry.getKey() >> 32;
+                    long c = (int) (long) entry.getKey();
+                    if (r >= firstRow && r <= lastRow && c >= firstCol && c <= lastCol) {
+                        markers.add(marker(entry.getValue()));
+                    }
+                }
+            } else {
+                for (long r = firstRow; r <= lastRow; r++) {
+                    for (long c = firstCol; c <= lastCol; c++) {
+                        Cluster cluster = clusters.get(key(r, c));
+                        if (cluster != null) {
+                            markers.add(marker(cluster));
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return markers;
+    }
+
+    // Lower bound on the distance from the point to any cell outside the searched rings
+    private static double searchedRadiusKm(double latitude, int ring) {
+        double cellLatKm = CELL_DEGREES * KM_PER_DEGREE_LAT;
+        double farLat = Math.min(89.9, Math.abs(latitude) + (ring + 1) * CELL_DEGREES);
+        double cellLonKm = cellLatKm * Math.cos(Math.toRadians(farLat));
+        // The point may sit anywhere inside its own cell, so only `ring` full cells are guaranteed
+        return ring * Math.min(cellLatKm, cellLonKm) * 0.999;
+    }
+
+    private void put(Long patientId, double latitude, double longitude) {
+        long cell = key(row(latitude), col(longitude));
+        Point point = new Point(patientId, latitude, longitude, cell);
+        cells.computeIfAbsent(cell, c -> new ArrayList<>()).add(point);
+        byPatient.put(patientId, point);
+        for (int zoom = 0; zoom <= MAX_CLUSTER_ZOOM; zoom++) {
+            Cluster cluster = clustersByZoom[zoom].computeIfAbsent(clusterKey(zoom, latitude, longitude),
+                    k -> new Cluster());
+            cluster.count++;
+            cluster.latitudeSum += latitude;
+            cluster.longitudeSum += longitude;
+            cluster.patientId = patientId;
+        }
+    }
+
+    private void removeLocked(Long patientId) {
+        Point previous = byPatient.remove(patientId);
+        if (previous == null) {
+            return;
+        }
+        List<Point> cell = cells.get(previous.cell);
+        cell.remove(previous);
+        if (cell.isEmpty()) {
+            cells.remove(previous.cell);
+        }
+        for (int zoom = 0; zoom <= MAX_CLUSTER_ZOOM; zoom++) {
+            long key = clusterKey(zoom, previous.latitude, previous.longitude);
+            Cluster cluster = clustersByZoom[zoom].get(key);
+            if (--cluster.count == 0) {
+                clustersByZoom[zoom].remove(key);
+                continue;
+            }
+            cluster.latitudeSum -= previous.latitude;
+            cluster.longitudeSum -= previous.longitude;
+            if (cluster.count == 1) {
+                // Down to one patient, whose position is what's left of the sums: pin it exactly
+                Point last = pointNear(cluster.latitudeSum, cluster.longitudeSum);
+                cluster.latitudeSum = last.latitude;
+                cluster.longitudeSum = last.longitude;
+                cluster.patientId = last.patientId;
+            }
+        }
+    }
+
+    private static MapMarkerDto marker(Cluster cluster) {
+        if (cluster.count == 1) {
+            return new MapMarkerDto(cluster.latitudeSum, cluster.longitudeSum, 1, cluster.patientId);
+        }
+        return new MapMarkerDto(cluster.latitudeSum / cluster.count, cluster.longitudeSum / cluster.count,
+                cluster.count, null);
+    }
+
+    private List<Point> cellsInBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        List<Point> points = new ArrayList<>();
+        for (long r = row(minLatitude); r <= row(maxLatitude); r++) {
+            for (long c = col(minLongitude); c <= col(maxLongitude); c++) {
+                points.addAll(cells.getOrDefault(key(r, c), List.of()));
+            }
+        }
+        return points;
+    }
+
+    // The indexed patient closest to a position, looking only at its own and adjacent grid cells
+    private Point pointNear(double latitude, double longitude) {
+        Point closest = null;
+        double closestDistance = Double.MAX_VALUE;
+        for (long r = row(latitude) - 1; r <= row(latitude) + 1; r++) {
+            for (long c = col(longitude) - 1; c <= col(longitude) + 1; c++) {
+                for (Point point : cells.getOrDefault(key(r, c), List.of())) {
+                    double distance = Math.abs(point.latitude - latitude) + Math.abs(point.longitude - longitude);
+                    if (distance < closestDistance) {
+                        closest = point;
+                        closestDistance = distance;
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    // A zoom-z map tile spans 360 / 2^z degrees of longitude
+    static double clusterCellDegrees(int zoom) {
+        return 360.0 / (1L << zoom) / CLUSTER_CELLS_PER_TILE;
+    }
+
+    private static long clusterKey(int zoom, double latitude, double longitude) {
+        double cellDegrees = clusterCellDegrees(zoom);
+        return key((long) Math.floor(latitude / cellDegrees), (long) Math.floor(longitude / cellDegrees));
+    }
+
+    private static void collectWithin(List<Neighbor> result, Point point, double latitude, double longitude,
+            double radiusKm) {
+        double distance = GeoUtils.distanceKm(latitude, longitude, point.latitude, point.longitude);
+        if (distance <= radiusKm) {
+            result.add(neighbor(point, distance));
+        }
+    }
+
+    private static void offer(PriorityQueue<Neighbor> best, int k, Point point, double distance) {
+        if (best.size() < k) {
+            best.add(neighbor(point, distance));
+        } else if (distance < best.peek().distanceKm()) {
+            best.poll();
+            best.add(neighbor(point, distance));
+        }
+    }
+
+    private static Neighbor neighbor(Point point, double distance) {
+        return new Neighbor(point.patientId, point.latitude, point.longitude, distance);
+    }
+
+    private static long row(double latitude) {
+        return (long) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    private static long col(double longitude) {
+        return (long) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    private static long key(long row, long col) {
+        return (row << 32) ^ (col & 0xffffffffL);
+    }
+}
@@ -0,0 +1,149 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ProcedureFrequencyDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.ProcedureUsageDaily;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.ProcedureUsageDailyRepository;
+import com.erfan.cch.Repo.ProcedureUsageRollupRepository;
+import com.erfan.cch.Repo.ProcedureUsageRollupRepository.DailyKey;
+import com.erfan.cch.Repo.VolunteerRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * How often each procedure is done, kept per completion day, procedure and volunteer in the
+ * procedure_usage_daily table. Report submissions adjust it in their transaction, so a yearly
+ * report reads at most one row per month, procedure and volunteer.
+ */
+@Service
+public class ProcedureUsageRollup {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcedureUsageRollup.class);
+
+    /**
+     * One submitted report. {@code countedDay} is the day the visit's current procedures are
+     * counted on, null if they aren't counted; {@code procedureIds} are the new procedures,
+     * null unless the submission completes the visit.
+     */
+    public record Completion(Long visitId, Long volunteerId, LocalDate countedDay, Collection<Long> procedureIds) {
+    }
+
+    private final ProcedureUsageRollupRepository rollupRepository;
+    private final ProcedureUsageDailyRepository procedureUsageDailyRepository;
+    private final VolunteerRepository volunteerRepository;
+
+    public ProcedureUsageRollup(ProcedureUsageRollupRepository rollupRepository,
+            ProcedureUsageDailyRepository procedureUsageDailyRepository, VolunteerRepository volunteerRepository) {
+        this.rollupRepository = rollupRepository;
+        this.procedureUsageDailyRepository = procedureUsageDailyRepository;
+        this.volunteerRepository = volunteerRepository;
+    }
+
+    /**
+     * Moves the procedures of the submitted reports into the rollup. Must run before the new
+     * procedures are flushed to visit_procedure, because the old ones are read from there.
+     */
+    @Transactional
+    public void replaceProcedures(List<Completion> completions, LocalDate day) {
+        Set<Long> counted = completions.stream()
+                .filter(c -> c.countedDay() != null)
+                .map(Completion::visitId)
+                .collect(Collectors.toSet());
+        Map<Long, List<Long>> previous = rollupRepository.findProcedures(counted);
+
+        SortedMap<DailyKey, Long> deltas = new TreeMap<>();
+        for (Completion completion : completions) {
+            long volunteerId = completion.volunteerId() != null ? completion.volunteerId() : ProcedureUsageDaily.NO_VOLUNTEER;
+            if (completion.countedDay() != null) {
+                for (Long procedureId : previous.getOrDefault(completion.visitId(), List.of())) {
+                    deltas.merge(new DailyKey(completion.countedDay(), procedureId, volunteerId), -1L, Long::sum);
+                }
+            }
+            if (completion.procedureIds() != null) {
+                for (Long procedureId : new HashSet<>(completion.procedureIds())) {
+                    deltas.merge(new DailyKey(day, procedureId, volunteerId), 1L, Long::sum);
+                }
+            }
+        }
+        deltas.values().removeIf(count -> count == 0);
+        rollupRepository.addDailyCounts(deltas);
+    }
+
+    /**
+     * Procedure counts between start and end inclusive, optionally broken down by calendar
+     * month and by volunteer. Rows come back by month, then procedure, then volunteer name.
+     */
+    public List<ProcedureFrequencyDto> frequency(LocalDate startDate, LocalDate endDate, boolean monthly,
+            boolean perVolunteer) {
+        Map<List<Object>, ProcedureFrequencyDto> rows = new LinkedHashMap<>();
+        for (Object[] r : procedureUsageDailyRepository.findMonthlyCounts(startDate, endDate)) {
+            LocalDate month = monthly ? LocalDate.of((Integer) r[0], (Integer) r[1], 1) : null;
+            Long volunteerId = perVolunteer ? (Long) r[4] : null;
+            Long procedureId = (Long) r[2];
+            ProcedureFrequencyDto row = rows.computeIfAbsent(Arrays.asList(month, volunteerId, procedureId),
+                    key -> new ProcedureFrequencyDto(month, volunteerId, null, procedureId, (String) r[3], 0));
+            row.setVisits(row.getVisits() + (Long) r[5]);
+        }
+        if (perVolunteer) {
+            Set<Long> volunteerIds = rows.values().stream()
+                    .map(ProcedureFrequencyDto::getVolunteerId)
+                    .filter(id -> id != ProcedureUsageDaily.NO_VOLUNTEER)
+                    .collect(Collectors.toSet());
+            Map<Long, String> names = volunteerRepository.findAllById(volunteerIds).stream()
+                    .collect(Collectors.toMap(Volunteer::getId, v -> Objects.requireNonNullElse(v.getName(), "")));
+            for (ProcedureFrequencyDto row : rows.values()) {
+                if (row.getVolunteerId() == ProcedureUsageDaily.NO_VOLUNTEER) {
+                    row.setVolunteerId(null);
+                } else {
+                    row.setVolunteerName(names.get(row.getVolunteerId()));
+                }
+            }
+        }
+        List<ProcedureFrequencyDto> result = new ArrayList<>(rows.values());
+        result.sort(Comparator.comparing(ProcedureFrequencyDto::getMonth, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(ProcedureFrequencyDto::getProcedureName, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(ProcedureFrequencyDto::getProcedureId)
+                .thenComparing(ProcedureFrequencyDto::getVolunteerName, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    /**
+     * Fills the rollup from the recorded procedures the first time the application starts with it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        if (rollupRepository.hasDailyCounts() || !rollupRepository.hasProcedures()) {
+            return;
+        }
+        logger.info("Procedure usage rollup is empty, backfilling it from visit procedures");
+        rebuild();
+    }
+
+    @Transactional
+    public int rebuild() {
+        int rows = rollupRepository.rebuildDailyCounts(Status.COMPLETED.ordinal(), ProcedureUsageDaily.NO_VOLUNTEER);
+        logger.info("Rebuilt procedure usage rollup with {} rows", rows);
+        return rows;
+    }
+}
@@ -0,0 +1,328 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Dto.VisitReportRequest;
+import com.erfan.cch.Dto.VisitReportResultDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.ProcedureDone;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.Repo.ProcedureRepository;
+import com.erfan.cch.Security.CurrentPrincipal;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StopWatch;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Single pipeline behind both the admin and the volunteer "submit report" endpoints:
+ * resolve submitter, load procedures, deduct stock, persist once. Each stage is timed
+ * and logged at debug level.
+ */
+@Service
+public class VisitCompletionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VisitCompletionService.class);
+
+    public static final String SUBMITTED_MESSAGE = "Visit report submitted successfully";
+    static final int MAX_BATCH_SIZE = 200;
+
+    private final PatientVisitReportRepository reportRepository;
+    private final ProcedureRepository procedureRepository;
+    private final ConsumableStockService consumableStockService;
+    private final CurrentPrincipal currentPrincipal;
+    private final IdempotencyService idempotencyService;
+    private final DashboardCounters dashboardCounters;
+    private final VolunteerDashboardCounters volunteerDashboardCounters;
+    private final ConsumableUsageRollup consumableUsageRollup;
+    private final ProcedureUsageRollup procedureUsageRollup;
+
+    public VisitCompletionService(PatientVisitReportRepository reportRepository,
+            ProcedureRepository procedureRepository, ConsumableStockService consumableStockService,
+            CurrentPrincipal currentPrincipal, IdempotencyService idempotencyService,
+            DashboardCounters dashboardCounters, VolunteerDashboardCounters volunteerDashboardCounters,
+            ConsumableUsageRollup consumableUsageRollup, ProcedureUsageRollup procedureUsageRollup) {
+        this.reportRepository = reportRepository;
+        this.procedureRepository = procedureRepository;
+        this.consumableStockService = consumableStockService;
+        this.currentPrincipal = currentPrincipal;
+        this.idempotencyService = idempotencyService;
+        this.dashboardCounters = dashboardCounters;
+        this.volunteerDashboardCounters = volunteerDashboardCounters;
+        this.consumableUsageRollup = consumableUsageRollup;
+        this.procedureUsageRollup = procedureUsageRollup;
+    }
+
+    /**
+     * Claims the idempotency key and completes the visit in one transaction, so a failed
+     * submission releases the key and a concurrent retry with the same key is rejected.
+     */
+    @Transactional
+    public String completeRecorded(Long principalId, String idempotencyKey, Long visitId, List<Long> procedureIds,
+            List<ConsumableUsageDto> consumableUsage, Status status, String notes) {
+        // Claim first: a concurrent duplicate blocks on the unique index instead of deducting stock
+        idempotencyService.record(principalId, idempotencyKey, visitId, SUBMITTED_MESSAGE);
+        complete(visitId, procedureIds, consumableUsage, status, notes);
+        return SUBMITTED_MESSAGE;
+    }
+
+    @Transactional
+    public PatientVisitReport complete(Long visitId, List<Long> procedureIds, List<ConsumableUsageDto> consumableUsage,
+            Status status, String notes) {
+        StopWatch stopWatch = new StopWatch("visit-completion " + visitId);
+        LocalDate today = LocalDate.now();
+
+        stopWatch.start("load-visit");
+        PatientVisitReport report = reportRepository.findById(visitId)
+                .orElseThrow(() -> new RuntimeException("Visit not found"));
+        stopWatch.stop();
+
+        stopWatch.start("resolve-submitter");
+        report.setSubmittedBy(resolveSubmitter(report));
+        stopWatch.stop();
+
+        stopWatch.start("load-procedures");
+        List<ProcedureDone> procedureDones = procedureIds == null || procedureIds.isEmpty()
+                ? new ArrayList<>()
+                : procedureRepository.findAllById(procedureIds);
+        stopWatch.stop();
+
+        // One read, one conditional batch update and one batch insert for all consumables;
+        // a resubmission only takes (or gives back) the difference to its stored usage
+        stopWatch.start("deduct-stock");
+        Map<Long, Integer> quantities = consumableStockService.aggregate(consumableUsage);
+        Map<Long, Integer> previousUsage = consumableStockService.usages(List.of(report.getId()))
+                .getOrDefault(report.getId(), Map.of());
+        consumableStockService.deduct(ConsumableStockService.change(quantities, previousUsage));
+        LocalDate countedDay = rolledUpDay(report);
+        consumableUsageRollup.replaceUsage(
+                countedDay == null ? Map.of() : Map.of(report.getId(), countedDay),
+                status == Status.COMPLETED ? Map.of(report.getId(), quantities) : Map.of(),
+                today);
+        consumableStockService.replaceUsage(report.getId(), quantities);
+        stopWatch.stop();
+
+        stopWatch.start("persist");
+        procedureUsageRollup.replaceProcedures(List.of(new ProcedureUsageRollup.Completion(report.getId(),
+                volunteerId(report), countedDay, status == Status.COMPLETED ? procedureIdsOf(procedureDones) : null)),
+                today);
+        dashboardCounters.visitStatusChanged(report.getStatus(), status);
+        volunteerDashboardCounters.visitStatusChanged(volunteerId(report), report.getStatus(), status);
+        report.setStatus(status);
+        report.setCompletedDate(today);
+        report.setNotes(notes);
+        report.setProceduresDone(procedureDones);
+        PatientVisitReport saved = reportRepository.save(report);
+        stopWatch.stop();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(stopWatch.prettyPrint());
+        }
+        return saved;
+    }
+
+    /**
+     * Submits many reports in one transaction with set-based reads: one query each for the
+     * visits, procedures and consumables, one batched stock deduction and one batch of usage
+     * rows. Stock is allocated to reports in request order, each taking the difference to its
+     * visit's stored usage; a report that can't be satisfied (unknown visit, bad usage line,
+     * not enough stock) is skipped and reported back without affecting the others.
+     */
+    @Transactional
+    public List<VisitReportResultDto> completeBatch(List<VisitReportRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return List.of();
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " reports can be submitted at once");
+        }
+        StopWatch stopWatch = new StopWatch("visit-completion batch of " + requests.size());
+        LocalDate today = LocalDate.now();
+
+        stopWatch.start("load-visits");
+        Set<Long> visitIds = requests.stream()
+                .map(VisitReportRequest::getVisitId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, PatientVisitReport> visits = reportRepository.findAllById(visitIds).stream()
+                .collect(Collectors.toMap(PatientVisitReport::getId, Function.identity()));
+        stopWatch.stop();
+
+        stopWatch.start("load-procedures");
+        Set<Long> procedureIds = requests.stream()
+                .filter(r -> r.getProcedureIds() != null)
+                .flatMap(r -> r.getProcedureIds().stream())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, ProcedureDone> procedures = procedureIds.isEmpty()
+                ? Map.of()
+                : procedureRepository.findAllById(procedureIds).stream()
+                        .collect(Collectors.toMap(ProcedureDone::getId, Function.identity()));
+        stopWatch.stop();
+
+        stopWatch.start("allocate-stock");
+        List<Map<Long, Integer>> quantitiesPerReport = new ArrayList<>(requests.size());
+        String[] rejections = new String[requests.size()];
+        Map<Long, Map<Long, Integer>> previousUsage = consumableStockService.usages(visits.keySet());
+        Set<Long> consumableIds = new HashSet<>();
+        previousUsage.values().forEach(quantities -> consumableIds.addAll(quantities.keySet()));
+        for (int i = 0; i < requests.size(); i++) {
+            Map<Long, Integer> quantities = Map.of();
+            try {
+                quantities = consumableStockService.aggregate(requests.get(i).getConsumables());
+            } catch (IllegalArgumentException e) {
+                rejections[i] = e.getMessage();
+            }
+            quantitiesPerReport.add(quantities);
+            consumableIds.addAll(quantities.keySet());
+        }
+        Map<Long, Consumable> consumables = consumableIds.isEmpty() ? Map.of() : consumableStockService.loadAll(consumableIds);
+        Map<Long, Integer> remaining = new HashMap<>();
+        consumables.forEach((id, consumable) ->
+                remaining.put(id, consumable.getStockQuantity() == null ? 0 : consumable.getStockQuantity()));
+
+        Map<Long, Integer> totals = new TreeMap<>();
+        Map<Long, Map<Long, Integer>> usageByVisit = new LinkedHashMap<>();
+        Map<Long, LocalDate> previouslyCompleted = new HashMap<>();
+        Map<Long, Map<Long, Integer>> completedUsage = new HashMap<>();
+        List<ProcedureUsageRollup.Completion> completions = new ArrayList<>();
+        List<PatientVisitReport> accepted = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            VisitReportRequest request = requests.get(i);
+            PatientVisitReport report = request.getVisitId() == null ? null : visits.get(request.getVisitId());
+            Map<Long, Integer> change = report == null ? Map.of() : ConsumableStockService.change(
+                    quantitiesPerReport.get(i), previousUsage.getOrDefault(report.getId(), Map.of()));
+            if (rejections[i] == null) {
+                rejections[i] = report == null ? "Visit not found"
+                        : usageByVisit.containsKey(report.getId()) ? "Visit submitted twice in this batch"
+                        : checkStock(change, consumables, remaining);
+            }
+            if (rejections[i] != null) {
+                continue;
+            }
+            change.forEach((id, qty) -> {
+                remaining.merge(id, -qty, Integer::sum);
+                totals.merge(id, qty, Integer::sum);
+            });
+            usageByVisit.put(report.getId(), quantitiesPerReport.get(i));
+            LocalDate countedDay = rolledUpDay(report);
+            if (countedDay != null) {
+                previouslyCompleted.put(report.getId(), countedDay);
+            }
+            if (request.getStatus() == Status.COMPLETED) {
+                completedUsage.put(report.getId(), quantitiesPerReport.get(i));
+            }
+
+            report.setSubmittedBy(resolveSubmitter(report));
+            dashboardCounters.visitStatusChanged(report.getStatus(), request.getStatus());
+            volunteerDashboardCounters.visitStatusChanged(volunteerId(report), report.getStatus(), request.getStatus());
+            report.setStatus(request.getStatus());
+            report.setCompletedDate(today);
+            report.setNotes(request.getNotes());
+            report.setProceduresDone(request.getProcedureIds() == null ? new ArrayList<>()
+                    : request.getProcedureIds().stream()
+                            .map(procedures::get)
+                            .filter(Objects::nonNull)
+                            .distinct()
+                            .collect(Collectors.toCollection(ArrayList::new)));
+            completions.add(new ProcedureUsageRollup.Completion(report.getId(), volunteerId(report), countedDay,
+                    request.getStatus() == Status.COMPLETED ? procedureIdsOf(report.getProceduresDone()) : null));
+            accepted.add(report);
+        }
+        stopWatch.stop();
+
+        // A concurrent submission can still win the race for the last units; the conditional
+        // update then fails the batch as a whole and the client retries it
+        stopWatch.start("deduct-stock");
+        // Returns and new usage of different reports can cancel out
+        totals.values().removeIf(qty -> qty == 0);
+        consumableStockService.deduct(totals, consumables);
+        consumableUsageRollup.replaceUsage(previouslyCompleted, completedUsage, today);
+        consumableStockService.replaceUsages(usageByVisit);
+        stopWatch.stop();
+
+        stopWatch.start("persist");
+        procedureUsageRollup.replaceProcedures(completions, today);
+
+        reportRepository.saveAll(accepted);
+        stopWatch.stop();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(stopWatch.prettyPrint());
+        }
+
+        List<VisitReportResultDto> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            results.add(rejections[i] == null
+                    ? new VisitReportResultDto(requests.get(i).getVisitId(), true, SUBMITTED_MESSAGE)
+                    : new VisitReportResultDto(requests.get(i).getVisitId(), false, rejections[i]));
+        }
+        return results;
+    }
+
+    private static String checkStock(Map<Long, Integer> quantities, Map<Long, Consumable> consumables,
+            Map<Long, Integer> remaining) {
+        for (Map.Entry<Long, Integer> usage : quantities.entrySet()) {
+            Consumable consumable = consumables.get(usage.getKey());
+            if (consumable == null) {
+                return "Consumable not found";
+            }
+            if (remaining.get(usage.getKey()) < usage.getValue()) {
+                return "Not enough stock for consumable: " + consumable.getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The day a visit's current usage is counted on in the usage rollup, or null while it
+     * isn't counted. Matches {@link ConsumableUsageRollup#rebuild()}: visits completed before
+     * completion dates were recorded count on their visit date.
+     */
+    private static LocalDate rolledUpDay(PatientVisitReport report) {
+        if (report.getStatus() != Status.COMPLETED) {
+            return null;
+        }
+        return report.getCompletedDate() != null ? report.getCompletedDate() : report.getVisitDate();
+    }
+
+    private static List<Long> procedureIdsOf(List<ProcedureDone> procedures) {
+        return procedures.stream().map(ProcedureDone::getId).toList();
+    }
+
+    private static Long volunteerId(PatientVisitReport report) {
+        return report.getVolunteer() != null ? report.getVolunteer().getId() : null;
+    }
+
+    /**
+     * The principal the JWT filter already resolved; internal callers without a request
+     * fall back to the assigned volunteer, which is what a volunteer submission records anyway.
+     */
+    private String resolveSubmitter(PatientVisitReport report) {
+        try {
+            String name = currentPrincipal.get().getName();
+            if (name != null) {
+                return name;
+            }
+        } catch (ResponseStatusException | IllegalStateException e) {
+            logger.debug("No request principal for visit {}, using the assigned volunteer", report.getId());
+        }
+        return report.getVolunteer() != null ? report.getVolunteer().getName() : null;
+    }
+}
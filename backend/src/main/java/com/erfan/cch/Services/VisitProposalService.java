@@ -0,0 +1,148 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.VisitProposalDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.Repo.VolunteerRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Suggests a volunteer for every pending visit on a date. A volunteer scores the distance
+ * from the patient to the closest other patient they already visit that day (or a flat
+ * idle distance when none is nearby), plus a per-visit penalty for how busy they are.
+ * Visits are placed in id order, each as if the proposals before it were applied.
+ * Nothing is saved; admins apply the proposals they agree with through the usual assignment.
+ */
+@Service
+public class VisitProposalService {
+
+    // Patients around each visit that are checked for volunteers already in the area
+    static final int NEIGHBOURS = 32;
+
+    private final PatientVisitReportRepository reportRepository;
+    private final VolunteerRepository volunteerRepository;
+    private final PatientSpatialIndex patientSpatialIndex;
+    private final double idleDistanceKm;
+    private final double loadWeightKm;
+
+    public VisitProposalService(PatientVisitReportRepository reportRepository,
+            VolunteerRepository volunteerRepository, PatientSpatialIndex patientSpatialIndex,
+            @Value("${cch.assignment.idle-distance-km:10}") double idleDistanceKm,
+            @Value("${cch.assignment.load-weight-km:2}") double loadWeightKm) {
+        this.reportRepository = reportRepository;
+        this.volunteerRepository = volunteerRepository;
+        this.patientSpatialIndex = patientSpatialIndex;
+        this.idleDistanceKm = idleDistanceKm;
+        this.loadWeightKm = loadWeightKm;
+    }
+
+    public List<VisitProposalDto> proposeForDate(LocalDate date) {
+        List<Volunteer> volunteers = volunteerRepository.findAllByStatus(Status.ACTIVE);
+        if (volunteers.isEmpty()) {
+            return List.of();
+        }
+        List<PatientVisitReport> visits = reportRepository.findWithPatientAndVolunteerByVisitDate(date);
+
+        Map<Long, Integer> load = new HashMap<>();
+        // Patient to the volunteers visiting them that day, with how many visits each
+        Map<Long, Map<Long, Integer>> volunteersByPatient = new HashMap<>();
+        List<PatientVisitReport> pending = new ArrayList<>();
+        for (PatientVisitReport visit : visits) {
+            if (visit.getStatus() == Status.CANCELLED) {
+                continue;
+            }
+            if (visit.getVolunteer() != null) {
+                load.merge(visit.getVolunteer().getId(), 1, Integer::sum);
+                if (visit.getPatient() != null) {
+                    addStop(volunteersByPatient, visit.getPatient().getId(), visit.getVolunteer().getId(), 1);
+                }
+            }
+            if (visit.getStatus() == Status.PENDING && visit.getPatient() != null) {
+                pending.add(visit);
+            }
+        }
+
+        List<VisitProposalDto> proposals = new ArrayList<>(pending.size());
+        for (PatientVisitReport visit : pending) {
+            Patient patient = visit.getPatient();
+            Long currentId = visit.getVolunteer() != null ? visit.getVolunteer().getId() : null;
+            Map<Long, Double> closestStop = closestStops(patient, volunteersByPatient);
+
+            Volunteer best = null;
+            double bestScore = Double.MAX_VALUE;
+            int bestLoad = 0;
+            for (Volunteer volunteer : volunteers) {
+                // The visit being placed doesn't count towards its current volunteer's load
+                int otherVisits = load.getOrDefault(volunteer.getId(), 0)
+                        - (volunteer.getId().equals(currentId) ? 1 : 0);
+                double score = closestStop.getOrDefault(volunteer.getId(), idleDistanceKm)
+                        + loadWeightKm * otherVisits;
+                // Ties keep the current assignment so proposals don't reshuffle for nothing
+                if (score < bestScore || score == bestScore && volunteer.getId().equals(currentId)) {
+                    best = volunteer;
+                    bestScore = score;
+                    bestLoad = otherVisits + 1;
+                }
+            }
+            // Later visits see this one where it is proposed to go, both in load and as a nearby stop
+            if (!best.getId().equals(currentId)) {
+                load.merge(best.getId(), 1, Integer::sum);
+                addStop(volunteersByPatient, patient.getId(), best.getId(), 1);
+                if (currentId != null) {
+                    load.merge(currentId, -1, Integer::sum);
+                    addStop(volunteersByPatient, patient.getId(), currentId, -1);
+                }
+            }
+            proposals.add(new VisitProposalDto(
+                    visit.getId(),
+                    patient.getId(),
+                    patient.getName(),
+                    currentId,
+                    best.getId(),
+                    best.getName(),
+                    closestStop.get(best.getId()),
+                    bestLoad));
+        }
+        return proposals;
+    }
+
+    private static void addStop(Map<Long, Map<Long, Integer>> volunteersByPatient, Long patientId, Long volunteerId,
+            int visits) {
+        Map<Long, Integer> volunteers = volunteersByPatient.computeIfAbsent(patientId, id -> new HashMap<>());
+        if (volunteers.merge(volunteerId, visits, Integer::sum) <= 0) {
+            volunteers.remove(volunteerId);
+        }
+    }
+
+    // Distance from the patient to each volunteer's closest other stop among the nearby patients
+    private Map<Long, Double> closestStops(Patient patient, Map<Long, Map<Long, Integer>> volunteersByPatient) {
+        Map<Long, Double> closest = new HashMap<>();
+        if (patient.getLatitude() == null || patient.getLongitude() == null) {
+            return closest;
+        }
+        for (PatientSpatialIndex.Neighbor neighbor
+                : patientSpatialIndex.nearest(patient.getLatitude(), patient.getLongitude(), NEIGHBOURS)) {
+            if (neighbor.distanceKm() >= idleDistanceKm) {
+                break;
+            }
+            if (neighbor.patientId().equals(patient.getId())) {
+                continue;
+            }
+            // Neighbours come nearest first, so the first hit per volunteer is their closest stop
+            for (Long volunteerId : volunteersByPatient.getOrDefault(neighbor.patientId(), Map.of()).keySet()) {
+                closest.putIfAbsent(volunteerId, neighbor.distanceKm());
+            }
+        }
+        return closest;
+    }
+}
@@ -0,0 +1,127 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.PatientVisitReportDto;
+import com.erfan.cch.utils.RouteOptimizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Orders a volunteer's visits for a day into a driving route and remembers the order, so
+ * the app can refresh the list without the route being recomputed each time. A cached
+ * route is reused only while the day's stops, their coordinates and the start point are
+ * unchanged; assignment changes also evict it explicitly.
+ */
+@Service
+public class VisitRouteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VisitRouteService.class);
+
+    // Start points closer than this to the cached one (~100 m) reuse the cached route
+    private static final double START_TOLERANCE_DEGREES = 0.001;
+
+    private final Map<RouteKey, CachedRoute> routes = new ConcurrentHashMap<>();
+
+    private record RouteKey(Long volunteerId, LocalDate date) {
+    }
+
+    private record CachedRoute(String fingerprint, Double startLatitude, Double startLongitude, List<Long> visitIds) {
+    }
+
+    /**
+     * Returns the visits in route order. Visits whose patient has no coordinates can't be
+     * placed and are kept at the end in their original order.
+     */
+    public List<PatientVisitReportDto> route(Long volunteerId, LocalDate date, List<PatientVisitReportDto> visits,
+            Double startLatitude, Double startLongitude) {
+        if (startLatitude == null || startLongitude == null) {
+            startLatitude = null;
+            startLongitude = null;
+        }
+        List<PatientVisitReportDto> located = new ArrayList<>();
+        List<PatientVisitReportDto> unlocated = new ArrayList<>();
+        for (PatientVisitReportDto visit : visits) {
+            (visit.getLatitude() != null && visit.getLongitude() != null ? located : unlocated).add(visit);
+        }
+        located.sort(Comparator.comparing(PatientVisitReportDto::getId));
+
+        RouteKey key = new RouteKey(volunteerId, date);
+        String fingerprint = fingerprint(located);
+        CachedRoute cached = routes.get(key);
+        List<Long> order;
+        if (cached != null && cached.fingerprint.equals(fingerprint)
+                && sameStart(cached, startLatitude, startLongitude)) {
+            order = cached.visitIds;
+        } else {
+            order = computeOrder(located, startLatitude, startLongitude);
+            evictPastDays(date);
+            routes.put(key, new CachedRoute(fingerprint, startLatitude, startLongitude, order));
+        }
+
+        Map<Long, PatientVisitReportDto> byId = new HashMap<>();
+        for (PatientVisitReportDto visit : located) {
+            byId.put(visit.getId(), visit);
+        }
+        List<PatientVisitReportDto> result = new ArrayList<>(visits.size());
+        for (Long visitId : order) {
+            result.add(byId.get(visitId));
+        }
+        result.addAll(unlocated);
+        return result;
+    }
+
+    public void invalidate(Long volunteerId, LocalDate date) {
+        routes.remove(new RouteKey(volunteerId, date));
+    }
+
+    private static List<Long> computeOrder(List<PatientVisitReportDto> located, Double startLatitude,
+            Double startLongitude) {
+        long start = System.nanoTime();
+        double[] latitudes = new double[located.size()];
+        double[] longitudes = new double[located.size()];
+        for (int i = 0; i < located.size(); i++) {
+            latitudes[i] = located.get(i).getLatitude();
+            longitudes[i] = located.get(i).getLongitude();
+        }
+        int[] route = RouteOptimizer.order(latitudes, longitudes, startLatitude, startLongitude);
+        List<Long> order = new ArrayList<>(route.length);
+        for (int index : route) {
+            order.add(located.get(index).getId());
+        }
+        logger.debug("Routed {} stops in {} us", route.length, (System.nanoTime() - start) / 1000);
+        return List.copyOf(order);
+    }
+
+    // Changes whenever a visit is added, removed or its patient moves
+    private static String fingerprint(List<PatientVisitReportDto> located) {
+        StringBuilder fingerprint = new StringBuilder();
+        for (PatientVisitReportDto visit : located) {
+            fingerprint.append(visit.getId()).append(':')
+                    .append(visit.getLatitude()).append(',')
+                    .append(visit.getLongitude()).append(';');
+        }
+        return fingerprint.toString();
+    }
+
+    private static boolean sameStart(CachedRoute cached, Double startLatitude, Double startLongitude) {
+        if (cached.startLatitude == null || startLatitude == null || startLongitude == null) {
+            return Objects.equals(cached.startLatitude, startLatitude)
+                    && Objects.equals(cached.startLongitude, startLongitude);
+        }
+        return Math.abs(cached.startLatitude - startLatitude) < START_TOLERANCE_DEGREES
+                && Math.abs(cached.startLongitude - startLongitude) < START_TOLERANCE_DEGREES;
+    }
+
+    private void evictPastDays(LocalDate date) {
+        routes.keySet().removeIf(key -> key.date.isBefore(date));
+    }
+}
@@ -0,0 +1,98 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.VolunteerDashboardStatsDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.utils.TransactionCallbacks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-volunteer numbers for the volunteer app's dashboard: visits per day from today on, and
+ * completed visits overall. Everything is loaded up front, so a volunteer missing from the
+ * tables simply has zero and the dashboard never reaches the database. Assignment and
+ * submission paths report changes after commit; a nightly reload corrects any drift and
+ * drops days that have passed.
+ */
+@Service
+public class VolunteerDashboardCounters {
+
+    private static final Logger logger = LoggerFactory.getLogger(VolunteerDashboardCounters.class);
+
+    private final PatientVisitReportRepository reportRepository;
+
+    private volatile Map<VolunteerDay, AtomicLong> visitsByDay = new ConcurrentHashMap<>();
+    private volatile Map<Long, AtomicLong> completedByVolunteer = new ConcurrentHashMap<>();
+
+    public VolunteerDashboardCounters(PatientVisitReportRepository reportRepository) {
+        this.reportRepository = reportRepository;
+    }
+
+    private record VolunteerDay(Long volunteerId, LocalDate date) {
+    }
+
+    public VolunteerDashboardStatsDto snapshot(Long volunteerId, LocalDate today) {
+        AtomicLong visits = visitsByDay.get(new VolunteerDay(volunteerId, today));
+        AtomicLong completed = completedByVolunteer.get(volunteerId);
+        return new VolunteerDashboardStatsDto(
+                visits == null ? 0 : visits.get(),
+                completed == null ? 0 : completed.get());
+    }
+
+    public void visitsAssigned(Long volunteerId, LocalDate date, long count) {
+        if (volunteerId == null || count == 0) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> visitsByDay
+                .computeIfAbsent(new VolunteerDay(volunteerId, date), key -> new AtomicLong())
+                .addAndGet(count));
+    }
+
+    /**
+     * A visit of this volunteer moved between statuses. Only completions are tracked per
+     * volunteer; a cancelled visit still counts towards its day, as it always has.
+     */
+    public void visitStatusChanged(Long volunteerId, Status from, Status to) {
+        long delta = (to == Status.COMPLETED ? 1 : 0) - (from == Status.COMPLETED ? 1 : 0);
+        if (volunteerId == null || delta == 0) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> completedByVolunteer
+                .computeIfAbsent(volunteerId, key -> new AtomicLong())
+                .addAndGet(delta));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${cch.volunteer-dashboard.reconcile-cron:0 30 2 * * *}")
+    public void reconcile() {
+        LocalDate today = LocalDate.now();
+        Map<VolunteerDay, AtomicLong> visits = new ConcurrentHashMap<>();
+        for (Object[] row : reportRepository.countVisitsPerVolunteerAndDateFrom(today)) {
+            visits.put(new VolunteerDay((Long) row[0], (LocalDate) row[1]), new AtomicLong((Long) row[2]));
+        }
+        Map<Long, AtomicLong> completed = new ConcurrentHashMap<>();
+        for (Object[] row : reportRepository.countVisitsPerVolunteerWithStatus(Status.COMPLETED)) {
+            completed.put((Long) row[0], new AtomicLong((Long) row[1]));
+        }
+        long drifted = completed.entrySet().stream()
+                .filter(e -> {
+                    AtomicLong current = completedByVolunteer.get(e.getKey());
+                    return current == null || current.get() != e.getValue().get();
+                })
+                .count();
+        // Swapped in whole; a change committing during the reload can be off until the next run
+        visitsByDay = visits;
+        completedByVolunteer = completed;
+        logger.info("Loaded dashboard counters for {} volunteer days and {} volunteers ({} corrected)",
+                visits.size(), completed.size(), drifted);
+    }
+}
@@ -1,29 +1,29 @@
 package com.erfan.cch.Services;
 
 import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Dto.CursorSliceDto;
 import com.erfan.cch.Dto.PatientVisitReportDto;
 import com.erfan.cch.Dto.ProcedureDoneDto;
+import com.erfan.cch.Dto.VisitReportRequest;
+import com.erfan.cch.Dto.VisitReportResultDto;
 import com.erfan.cch.Dto.VolunteerDashboardStatsDto;
 import com.erfan.cch.Enums.Status;
 import com.erfan.cch.Models.Consumable;
 import com.erfan.cch.Models.PatientVisitReport;
-import com.erfan.cch.Models.ProcedureDone;
-import com.erfan.cch.Models.VisitConsumableUsage;
-import com.erfan.cch.Models.Volunteer;
 import com.erfan.cch.Repo.ConsumableRepository;
 import com.erfan.cch.Repo.PatientVisitReportRepository;
 import com.erfan.cch.Repo.ProcedureRepository;
 import com.erfan.cch.Repo.VolunteerRepository;
-import com.erfan.cch.Security.JwtService;
-import com.erfan.cch.Security.JwtUtils;
+import com.erfan.cch.Security.CurrentPrincipal;
 import com.erfan.cch.utils.ConvertToDto;
-import jakarta.servlet.http.HttpServletRequest;
+import com.erfan.cch.utils.KeysetCursor;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 
 import java.time.LocalDate;
@@ -35,25 +35,28 @@ public class VolunteerService {
     private final PatientVisitReportRepository reportRepository;
     private ConsumableRepository consumableRepository;
 
-    private final JwtService jwtService;
-
-    private final JwtUtils jwtUtils;
-
-    private final HttpServletRequest request;
+    private final CurrentPrincipal currentPrincipal;
+    private final VisitCompletionService visitCompletionService;
+    private final IdempotencyService idempotencyService;
+    private final VisitRouteService visitRouteService;
+    private final VolunteerDashboardCounters volunteerDashboardCounters;
 
     private VolunteerRepository volunteerRepository;
     @Autowired
     private PatientVisitReportRepository patientVisitReportRepository;
 
     public VolunteerService(PatientVisitReportRepository reportRepository, ConsumableRepository consumableRepository,
-            JwtService jwtService, JwtUtils jwtUtils, HttpServletRequest request,
-            VolunteerRepository volunteerRepository) {
+            CurrentPrincipal currentPrincipal, VolunteerRepository volunteerRepository,
+            VisitCompletionService visitCompletionService, IdempotencyService idempotencyService,
+            VisitRouteService visitRouteService, VolunteerDashboardCounters volunteerDashboardCounters) {
         this.reportRepository = reportRepository;
         this.consumableRepository = consumableRepository;
-        this.jwtService = jwtService;
-        this.jwtUtils = jwtUtils;
-        this.request = request;
+        this.currentPrincipal = currentPrincipal;
         this.volunteerRepository = volunteerRepository;
+        this.visitCompletionService = visitCompletionService;
+        this.idempotencyService = idempotencyService;
+        this.visitRouteService = visitRouteService;
+        this.volunteerDashboardCounters = volunteerDashboardCounters;
     }
 
     @Autowired
@@ -67,7 +70,7 @@ public class VolunteerService {
     }
 
     public List<PatientVisitReportDto> getTodaysAssignedVisits() {
-        Long jwtUserId = Long.valueOf(jwtService.extractId(jwtUtils.getJwtFromRequest(request)));
+        Long jwtUserId = currentPrincipal.getId();
         LocalDate today = LocalDate.now();
         return patientVisitReportRepository.findByVolunteerIdAndVisitDate(jwtUserId, today)
                 .stream()
@@ -75,68 +78,63 @@ public class VolunteerService {
                 .collect(Collectors.toList());
     }
 
-    @Transactional
+    /**
+     * Today's visits ordered into a short route from the given start point, e.g. the
+     * volunteer's current position. Without one the route starts wherever is shortest.
+     */
+    public List<PatientVisitReportDto> getTodaysRoute(Double startLatitude, Double startLongitude) {
+        return visitRouteService.route(currentPrincipal.getId(), LocalDate.now(), getTodaysAssignedVisits(),
+                startLatitude, startLongitude);
+    }
+
     public void submitVisitReport(Long visitId, List<Long> procedureIds, List<ConsumableUsageDto> consumableUsage,
             Status status, String notes) {
-        PatientVisitReport report = reportRepository.findById(visitId)
-                .orElseThrow(() -> new RuntimeException("Visit not found"));
-
-        report.setStatus(status);
-        report.setCompletedDate(LocalDate.now());
-        report.setNotes(notes);
-        // Set procedures
-        List<ProcedureDone> procedureDones = procedureRepository.findAllById(procedureIds);
-        report.setProceduresDone(procedureDones);
-
-        // Clear old consumables and rebuild
-        report.getConsumablesUsed().clear();
-        report.setSubmittedBy(report.getVolunteer().getName());
-
-        for (ConsumableUsageDto usageDto : consumableUsage) {
-
-            Long consumableId = usageDto.getConsumableId();
-            Integer qtyUsed = usageDto.getQuantity();
-            System.out.println("ConsumableId: " + consumableId + " QtyUsed: " + qtyUsed);
-            Consumable consumable = consumableRepository.findById(consumableId)
-                    .orElseThrow(() -> new RuntimeException("Consumable not found"));
-
-            if (consumable.getStockQuantity() < qtyUsed) {
-                throw new RuntimeException("Not enough stock for consumable: " + consumable.getName());
-            }
-
-            // Subtract stock
-            consumable.setStockQuantity(consumable.getStockQuantity() - qtyUsed);
-            consumableRepository.saveAndFlush(consumable);
-
-            // Create usage record
-            VisitConsumableUsage usage = new VisitConsumableUsage();
-            usage.setVisitReport(report);
-            usage.setConsumable(consumable);
-            usage.setQuantityUsed(qtyUsed);
-
-            report.getConsumablesUsed().add(usage);
+        visitCompletionService.complete(visitId, procedureIds, consumableUsage, status, notes);
+    }
+
+    /**
+     * Same as {@link #submitVisitReport} but safe to retry: a repeated Idempotency-Key
+     * replays the first response instead of deducting stock again.
+     */
+    public String submitVisitReport(String idempotencyKey, Long visitId, List<Long> procedureIds,
+            List<ConsumableUsageDto> consumableUsage, Status status, String notes) {
+        if (idempotencyKey == null) {
+            submitVisitReport(visitId, procedureIds, consumableUsage, status, notes);
+            return VisitCompletionService.SUBMITTED_MESSAGE;
         }
+        Long principalId = currentPrincipal.getId();
+        return idempotencyService.findReplay(principalId, idempotencyKey, visitId)
+                .orElseGet(() -> visitCompletionService.completeRecorded(principalId, idempotencyKey, visitId,
+                        procedureIds, consumableUsage, status, notes));
+    }
 
-        Long jwtUserId = Long.valueOf(jwtService.extractId(jwtUtils.getJwtFromRequest(request)));
-        reportRepository.save(report);
+    public List<VisitReportResultDto> submitVisitReports(List<VisitReportRequest> requests) {
+        return visitCompletionService.completeBatch(requests);
     }
 
     public Page<PatientVisitReportDto> getCompletedAndCancelledVisits(int page, int size) {
-        Long jwtUserId = Long.valueOf(jwtService.extractId(jwtUtils.getJwtFromRequest(request)));
+        Long jwtUserId = currentPrincipal.getId();
         Pageable pageable = PageRequest.of(page, size, Sort.by("visitDate").descending());
         return patientVisitReportRepository
                 .findByVolunteerIdAndStatusIn(jwtUserId, List.of(Status.COMPLETED, Status.CANCELLED), pageable)
                 .map(ConvertToDto::convertToPatientVisitReportDto);
     }
 
+    @Transactional
+    public CursorSliceDto<PatientVisitReportDto> getCompletedAndCancelledVisitsBefore(String cursor, int size) {
+        KeysetCursor.DateKey before = KeysetCursor.beforeDate(cursor);
+        Slice<PatientVisitReport> visits = patientVisitReportRepository.findVolunteerVisitsBefore(
+                currentPrincipal.getId(), List.of(Status.COMPLETED, Status.CANCELLED),
+                before.date(), before.id(), KeysetCursor.firstRows(size));
+        return KeysetCursor.toDto(visits, ConvertToDto::convertToPatientVisitReportDto,
+                v -> KeysetCursor.ofDate(v.getVisitDate(), v.getId()));
+    }
+
     public List<Consumable> getAllConsumables() {
         return consumableRepository.findAllByStatus(Status.ACTIVE);
     }
 
     public VolunteerDashboardStatsDto getDashboardStats() {
-        Long volunteerId = Long.valueOf(jwtService.extractId(jwtUtils.getJwtFromRequest(request)));
-        long todayVisits = reportRepository.countTodayVisits(volunteerId, LocalDate.now());
-        long completedVisits = reportRepository.countByVolunteerAndStatus(volunteerId, Status.COMPLETED);
-        return new VolunteerDashboardStatsDto(todayVisits, completedVisits);
+        return volunteerDashboardCounters.snapshot(currentPrincipal.getId(), LocalDate.now());
     }
 }
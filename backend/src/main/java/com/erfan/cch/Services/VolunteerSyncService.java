@@ -0,0 +1,104 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.PatientVisitReportDto;
+import com.erfan.cch.Dto.ProcedureDoneDto;
+import com.erfan.cch.Dto.VolunteerSyncDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.ProcedureDone;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.Repo.ProcedureRepository;
+import com.erfan.cch.Security.CurrentPrincipal;
+import com.erfan.cch.utils.ConvertToDto;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Change feed for the volunteer app. Without a cursor it returns the full snapshot
+ * (active procedures and consumables, today's and upcoming visits); with one it returns
+ * only the rows whose updated_at moved past it (for visits, theirs or their patient's), plus
+ * the ids of rows deactivated since and of visits re-dated before today, which left the
+ * volunteer's list.
+ */
+@Service
+public class VolunteerSyncService {
+
+    private final ProcedureRepository procedureRepository;
+    private final ConsumableRepository consumableRepository;
+    private final PatientVisitReportRepository reportRepository;
+    private final CurrentPrincipal currentPrincipal;
+    private final long cursorLagMillis;
+
+    public VolunteerSyncService(ProcedureRepository procedureRepository, ConsumableRepository consumableRepository,
+            PatientVisitReportRepository reportRepository, CurrentPrincipal currentPrincipal,
+            @Value("${cch.sync.cursor-lag-ms:5000}") long cursorLagMillis) {
+        this.procedureRepository = procedureRepository;
+        this.consumableRepository = consumableRepository;
+        this.reportRepository = reportRepository;
+        this.currentPrincipal = currentPrincipal;
+        this.cursorLagMillis = cursorLagMillis;
+    }
+
+    @Transactional
+    public VolunteerSyncDto changesSince(String cursor) {
+        Long volunteerId = currentPrincipal.getId();
+        // Rows stamped just before this read may belong to transactions that commit after it,
+        // so the next cursor trails the read by a lag; re-sent rows are harmless upserts
+        Instant readStart = Instant.now();
+        Instant since = parseCursor(cursor);
+        LocalDate today = LocalDate.now();
+
+        List<ProcedureDone> procedures = since == null
+                ? procedureRepository.findAllByStatus(Status.ACTIVE)
+                : procedureRepository.findByUpdatedAtAfter(since);
+        List<Consumable> consumables = since == null
+                ? consumableRepository.findAllByStatus(Status.ACTIVE)
+                : consumableRepository.findByUpdatedAtAfter(since);
+        List<PatientVisitReportDto> visits = (since == null
+                ? reportRepository.findByVolunteerIdAndVisitDateGreaterThanEqual(volunteerId, today)
+                : reportRepository.findChangedSince(volunteerId, today, since))
+                .stream()
+                .map(ConvertToDto::convertToPatientVisitReportDto)
+                .toList();
+        List<Long> removedVisits = since == null
+                ? List.of()
+                : reportRepository.findRemovedVisitIds(volunteerId, today, since);
+
+        List<ProcedureDoneDto> activeProcedures = procedures.stream()
+                .filter(p -> p.getStatus() == Status.ACTIVE)
+                .map(ConvertToDto::convertToProcedureDoneDto)
+                .toList();
+        List<Long> removedProcedures = procedures.stream()
+                .filter(p -> p.getStatus() != Status.ACTIVE)
+                .map(ProcedureDone::getId)
+                .toList();
+        List<Consumable> activeConsumables = consumables.stream()
+                .filter(c -> c.getStatus() == Status.ACTIVE)
+                .toList();
+        List<Long> removedConsumables = consumables.stream()
+                .filter(c -> c.getStatus() != Status.ACTIVE)
+                .map(Consumable::getId)
+                .toList();
+
+        String nextCursor = String.valueOf(readStart.toEpochMilli() - cursorLagMillis);
+        return new VolunteerSyncDto(activeProcedures, removedProcedures, activeConsumables, removedConsumables,
+                visits, removedVisits, nextCursor);
+    }
+
+    private static Instant parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(cursor.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sync cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.erfan.cch.utils;
+
+import com.erfan.cch.Dto.CursorSliceDto;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Opaque cursors for keyset listings. A cursor holds the sort key of the last row a client
+ * has seen, and the next page is read as "rows after that key" straight off an index, so
+ * page 500 costs the same as page 1. Clients must treat the value as opaque.
+ */
+public final class KeysetCursor {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Sort key of listings ordered by visit date then id, both descending.
+     */
+    public record DateKey(LocalDate date, long id) {
+    }
+
+    // Sorts after every real row, so a descending listing starts from the top
+    private static final DateKey BEFORE_ALL = new DateKey(LocalDate.of(9999, 12, 31), Long.MAX_VALUE);
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * The slice's page request: first {@code size} rows of a query that already filters past
+     * the cursor. Spring Data reads one extra row to answer hasNext, instead of a COUNT(*).
+     */
+    public static Pageable firstRows(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return PageRequest.of(0, size);
+    }
+
+    public static String ofId(long id) {
+        return encode(Long.toString(id));
+    }
+
+    /**
+     * The id to continue after; 0 (before every generated id) when there is no cursor yet.
+     */
+    public static long afterId(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(decode(cursor));
+        } catch (NumberFormatException e) {
+            throw invalid(cursor);
+        }
+    }
+
+    public static String ofDate(LocalDate date, long id) {
+        return encode(date + "|" + id);
+    }
+
+    public static DateKey beforeDate(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return BEFORE_ALL;
+        }
+        String[] parts = decode(cursor).split("\\|", -1);
+        if (parts.length != 2) {
+            throw invalid(cursor);
+        }
+        try {
+            return new DateKey(LocalDate.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw invalid(cursor);
+        }
+    }
+
+    public static <E, T> CursorSliceDto<T> toDto(Slice<E> slice, Function<E, T> converter, Function<E, String> cursorOf) {
+        List<E> rows = slice.getContent();
+        String next = slice.hasNext() && !rows.isEmpty() ? cursorOf.apply(rows.get(rows.size() - 1)) : null;
+        return new CursorSliceDto<>(rows.stream().map(converter).toList(), next != null, next);
+    }
+
+    private static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalid(cursor);
+        }
+    }
+
+    private static IllegalArgumentException invalid(String cursor) {
+        return new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+}
@@ -0,0 +1,129 @@
+package com.erfan.cch.utils;
+
+/**
+ * Orders a day's stops into a short open route: nearest-neighbour construction followed by
+ * 2-opt segment reversals until no reversal shortens it. Not optimal, but typically within a
+ * few percent of it and instant for the couple of dozen stops a volunteer has in a day.
+ */
+public final class RouteOptimizer {
+
+    // Guards against pathological inputs; real days converge in a handful of passes
+    private static final int MAX_PASSES = 100;
+
+    private RouteOptimizer() {
+    }
+
+    /**
+     * Visiting order of the stops as indexes into the coordinate arrays. With a start point
+     * the route leaves from it; without one the route may begin at whichever stop makes it
+     * shortest.
+     */
+    public static int[] order(double[] latitudes, double[] longitudes, Double startLatitude, Double startLongitude) {
+        int n = latitudes.length;
+        if (n != longitudes.length) {
+            throw new IllegalArgumentException("Latitude and longitude counts differ");
+        }
+        int[] route = new int[n];
+        if (n == 0) {
+            return route;
+        }
+        boolean hasStart = startLatitude != null && startLongitude != null;
+        double[][] distance = new double[n][n];
+        double[] fromStart = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                distance[i][j] = GeoUtils.distanceKm(latitudes[i], longitudes[i], latitudes[j], longitudes[j]);
+                distance[j][i] = distance[i][j];
+            }
+            if (hasStart) {
+                fromStart[i] = GeoUtils.distanceKm(startLatitude, startLongitude, latitudes[i], longitudes[i]);
+            }
+        }
+
+        nearestNeighbour(route, distance, hasStart ? fromStart : null);
+        twoOpt(route, distance, hasStart ? fromStart : null);
+        return route;
+    }
+
+    public static double length(int[] route, double[] latitudes, double[] longitudes,
+            Double startLatitude, Double startLongitude) {
+        double total = 0;
+        for (int i = 0; i < route.length; i++) {
+            if (i > 0) {
+                total += GeoUtils.distanceKm(latitudes[route[i - 1]], longitudes[route[i - 1]],
+                        latitudes[route[i]], longitudes[route[i]]);
+            } else if (startLatitude != null && startLongitude != null) {
+                total += GeoUtils.distanceKm(startLatitude, startLongitude, latitudes[route[0]], longitudes[route[0]]);
+            }
+        }
+        return total;
+    }
+
+    private static void nearestNeighbour(int[] route, double[][] distance, double[] fromStart) {
+        int n = route.length;
+        boolean[] visited = new boolean[n];
+        int current = 0;
+        if (fromStart != null) {
+            for (int i = 1; i < n; i++) {
+                if (fromStart[i] < fromStart[current]) {
+                    current = i;
+                }
+            }
+        }
+        route[0] = current;
+        visited[current] = true;
+        for (int step = 1; step < n; step++) {
+            int next = -1;
+            for (int candidate = 0; candidate < n; candidate++) {
+                if (!visited[candidate] && (next < 0 || distance[current][candidate] < distance[current][next])) {
+                    next = candidate;
+                }
+            }
+            route[step] = next;
+            visited[next] = true;
+            current = next;
+        }
+    }
+
+    /*
+     * Reversing route[i..j] swaps the edges (before i, i) and (j, after j) for (before i, j)
+     * and (i, after j). A missing neighbour - the open end of the route, or the free start
+     * when there is no start point - contributes nothing.
+     */
+    private static void twoOpt(int[] route, double[][] distance, double[] fromStart) {
+        int n = route.length;
+        boolean improved = true;
+        for (int pass = 0; improved && pass < MAX_PASSES; pass++) {
+            improved = false;
+            for (int i = 0; i < n - 1; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    double before = edge(route, i - 1, i, distance, fromStart) + edge(route, j, j + 1, distance, fromStart);
+                    double after = edge(route, i - 1, j, distance, fromStart) + edge(route, i, j + 1, distance, fromStart);
+                    if (after < before - 1e-9) {
+                        reverse(route, i, j);
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // Length of the edge between route positions a and b, where a == -1 is the start point
+    private static double edge(int[] route, int a, int b, double[][] distance, double[] fromStart) {
+        if (b >= route.length) {
+            return 0;
+        }
+        if (a < 0) {
+            return fromStart == null ? 0 : fromStart[route[b]];
+        }
+        return distance[route[a]][route[b]];
+    }
+
+    private static void reverse(int[] route, int i, int j) {
+        while (i < j) {
+            int swap = route[i];
+            route[i++] = route[j];
+            route[j--] = swap;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.erfan.cch.utils;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered visit codes of the form {@code VIS-yyyyMMdd-XXXXXXXXXX}. The suffix is a
+ * fixed-width base36 encoding of (millisecond of day, node id, per-millisecond sequence),
+ * so codes are unique across nodes with distinct ids and sort in creation order on a node.
+ *
+ * <p>The millisecond and sequence live in one {@link AtomicLong} advanced with CAS, so
+ * callers never block. When the 4096 codes of a millisecond are used up the generator
+ * borrows the next millisecond instead of waiting; it also never goes backwards if the
+ * wall clock does. After a restart it is moved past the last stored code (see
+ * {@link #advancePast}), so neither a clock that stepped back nor milliseconds borrowed
+ * before the restart can repeat a code.
+ *
+ * <p>The node id has no default: each instance must set its own {@code cch.visit-code.node-id},
+ * and startup fails when it is missing.
+ */
+@Component
+public class VisitCodeGenerator {
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final String PREFIX = "VIS-";
+    // 36^10 > 2^49 = 27 bits millisecond of day (enough for a 25-hour DST day) + 10 node bits + 12 sequence bits
+    private static final int SUFFIX_LENGTH = 10;
+    public static final int CODE_LENGTH = PREFIX.length() + 8 + 1 + SUFFIX_LENGTH;
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    // Used by PatientVisitReport's @PrePersist, which can't have beans injected
+    private static volatile VisitCodeGenerator shared = new VisitCodeGenerator(0, Clock.systemDefaultZone());
+
+    private final long nodeId;
+    private final Clock clock;
+    private final ZoneId zone;
+    // (logical epoch millisecond << SEQUENCE_BITS) | sequence of the last code handed out
+    private final AtomicLong state = new AtomicLong();
+    private volatile Day currentDay;
+
+    @Autowired
+    public VisitCodeGenerator(@Value("${cch.visit-code.node-id:}") String nodeId) {
+        this(parseNodeId(nodeId), Clock.systemDefaultZone());
+        shared = this;
+    }
+
+    VisitCodeGenerator(int nodeId, Clock clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Visit code node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+        this.zone = clock.getZone();
+    }
+
+    public static VisitCodeGenerator shared() {
+        return shared;
+    }
+
+    /**
+     * Makes every later code sort after the given one, which was issued by this or another
+     * node. Codes in another format are ignored.
+     *
+     * @return whether the code was understood
+     */
+    public boolean advancePast(String code) {
+        if (code == null || code.length() != CODE_LENGTH || !code.startsWith(PREFIX)) {
+            return false;
+        }
+        long dayStart;
+        long value;
+        try {
+            LocalDate date = LocalDate.parse(code.substring(PREFIX.length(), PREFIX.length() + 8),
+                    DateTimeFormatter.BASIC_ISO_DATE);
+            dayStart = date.atStartOfDay(zone).toInstant().toEpochMilli();
+            value = Long.parseLong(code.substring(CODE_LENGTH - SUFFIX_LENGTH), 36);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return false;
+        }
+        long millis = dayStart + (value >>> (NODE_BITS + SEQUENCE_BITS));
+        long issued = (millis << SEQUENCE_BITS) | (value & SEQUENCE_MASK);
+        state.accumulateAndGet(issued, Math::max);
+        return true;
+    }
+
+    private static int parseNodeId(String nodeId) {
+        if (nodeId == null || nodeId.isBlank()) {
+            throw new IllegalStateException("cch.visit-code.node-id must be set to a value between 0 and "
+                    + MAX_NODE_ID + " that no other running instance uses");
+        }
+        try {
+            return Integer.parseInt(nodeId.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("cch.visit-code.node-id is not a number: " + nodeId);
+        }
+    }
+
+    public String next() {
+        while (true) {
+            long previous = state.get();
+            long previousMillis = previous >>> SEQUENCE_BITS;
+            long now = clock.millis();
+            long millis;
+            long sequence;
+            if (now > previousMillis) {
+                millis = now;
+                sequence = 0;
+            } else if ((previous & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                millis = previousMillis;
+                sequence = (previous & SEQUENCE_MASK) + 1;
+            } else {
+                millis = previousMillis + 1;
+                sequence = 0;
+            }
+            if (state.compareAndSet(previous, (millis << SEQUENCE_BITS) | sequence)) {
+                return encode(millis, sequence);
+            }
+        }
+    }
+
+    private String encode(long millis, long sequence) {
+        Day day = dayOf(millis);
+        long value = (((millis - day.startMillis) << NODE_BITS | nodeId) << SEQUENCE_BITS) | sequence;
+        char[] code = new char[CODE_LENGTH];
+        day.prefix.getChars(0, day.prefix.length(), code, 0);
+        for (int i = CODE_LENGTH - 1; i >= day.prefix.length(); i--) {
+            code[i] = DIGITS[(int) (value % 36)];
+            value /= 36;
+        }
+        return new String(code);
+    }
+
+    private Day dayOf(long millis) {
+        Day day = currentDay;
+        if (day != null && millis >= day.startMillis && millis < day.endMillis) {
+            return day;
+        }
+        // Only recomputed when the date rolls over; a racing thread at worst builds the same value
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+        long start = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        String prefix = PREFIX + date.toString().replace("-", "") + "-";
+        day = new Day(start, end, prefix);
+        currentDay = day;
+        return day;
+    }
+
+    private record Day(long startMillis, long endMillis, String prefix) {
+    }
+}
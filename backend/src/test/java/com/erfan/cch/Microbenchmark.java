@@ -0,0 +1,49 @@
+package com.erfan.cch;
+
+import java.util.function.Supplier;
+
+/**
+ * A small JMH-style timing loop for the benchmark tests: warm-up rounds for the JIT, then
+ * measured rounds, reported as the best round's time per operation. Results are folded
+ * into a sink so the JIT cannot drop the work being measured.
+ *
+ * <p>Benchmarks are skipped by default; run them with {@code mvn test -Dcch.benchmarks=true
+ * -Dtest=*BenchmarkTests}.
+ */
+public final class Microbenchmark {
+
+    public static final String ENABLED_PROPERTY = "cch.benchmarks";
+
+    private static volatile int sink;
+
+    private Microbenchmark() {
+    }
+
+    /**
+     * Runs {@code operation} {@code rounds} times {@code batch} times after as many warm-up
+     * rounds, prints the result and returns the best round in nanoseconds per operation.
+     */
+    public static double nanosPerOp(String name, int rounds, int batch, Supplier<?> operation) {
+        for (int round = 0; round < rounds; round++) {
+            runBatch(batch, operation);
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            best = Math.min(best, runBatch(batch, operation));
+        }
+        double nanosPerOp = (double) best / batch;
+        System.out.printf("%-40s %12.1f us/op%n", name, nanosPerOp / 1_000);
+        return nanosPerOp;
+    }
+
+    private static long runBatch(int batch, Supplier<?> operation) {
+        int hash = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < batch; i++) {
+            hash += System.identityHashCode(operation.get());
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += hash;
+        return elapsed;
+    }
+}
@@ -0,0 +1,141 @@
+package com.erfan.cch.Security;
+
+import com.erfan.cch.Models.User;
+import com.erfan.cch.Repo.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTests {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService requestThreads = Executors.newFixedThreadPool(20);
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        requestThreads.shutdownNow();
+        encoder.shutdown();
+    }
+
+    @Test
+    void loginStormIsRejectedQuicklyOnceThePoolAndQueueAreFull() throws Exception {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(release), 2, 2, 10_000);
+
+        List<Future<Long>> storm = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            storm.add(requestThreads.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    encoder.matches("password", "hash");
+                } catch (ResponseStatusException e) {
+                    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+                }
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }));
+        }
+
+        // 2 running + 2 queued are accepted; everything else must come back without waiting on BCrypt
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (encoder.getRejectedCount() < 16 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(16, encoder.getRejectedCount());
+        assertEquals(2, encoder.getActiveCount());
+        assertEquals(2, encoder.getQueueDepth());
+
+        release.countDown();
+        long rejectedFast = 0;
+        for (Future<Long> call : storm) {
+            if (call.get(5, TimeUnit.SECONDS) < 500) {
+                rejectedFast++;
+            }
+        }
+        assertTrue(rejectedFast >= 16);
+    }
+
+    @Test
+    void timeoutsGiveBackQueueSlotsButNotStartedHashes() throws Exception {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(release), 1, 1, 100);
+        Future<?> started = requestThreads.submit(() -> encoder.matches("password", "hash"));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (encoder.getActiveCount() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> encoder.matches("password", "hash"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertThrows(ExecutionException.class, () -> started.get(5, TimeUnit.SECONDS));
+
+        // Both callers got their 503; the queued call is gone, the started hash still holds the worker
+        assertEquals(0, encoder.getQueueDepth());
+        assertEquals(1, encoder.getActiveCount());
+    }
+
+    @Test
+    void registrationKeepsTheRejectionStatus() {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(release), 1, 1, 50);
+        UserRepository userRepository = mock(UserRepository.class);
+        AuthenticationService authenticationService = new AuthenticationService(userRepository, null, null, encoder,
+                null, null);
+        User registration = new User();
+        registration.setEmail("storm@cch.org");
+        registration.setPassword("password");
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> authenticationService.registerUser(registration));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void upgradeEncodingStaysOnTheCallerThread() {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(release), 1, 1, 1_000);
+        assertFalse(encoder.upgradeEncoding("hash"));
+        assertEquals(0, encoder.getCompletedCount());
+    }
+
+    private static class BlockingEncoder implements PasswordEncoder {
+        private final CountDownLatch release;
+
+        BlockingEncoder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            await();
+            return "hash";
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            await();
+            return true;
+        }
+
+        private void await() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.erfan.cch.Security;
+
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Microbenchmark;
+import com.erfan.cch.Models.User;
+import com.erfan.cch.Services.UserService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.security.Key;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The token work the authentication filter does per request. It used to decode the key, build a
+ * parser and verify the signature three times; it now verifies once with a prebuilt parser.
+ */
+@EnabledIfSystemProperty(named = Microbenchmark.ENABLED_PROPERTY, matches = "true")
+class JwtParsingBenchmarkTests {
+
+    // Same secret as JwtService, rebuilt on every call the way the old code did
+    private static final String SECRET_KEY = "4e8e3a7215d4834a0bfade46cf9b9134104f2be3fea31faee6fbb54ad4fd4761";
+
+    @Test
+    void parsingOnceWithTheSharedParserBeatsThreeFreshParses() {
+        User user = new User(42L, "Asha", "asha@example.com", "secret");
+        user.setUserType(UserType.VOLUNTEER);
+        JwtService jwtService = new JwtService(mock(UserService.class));
+        String token = jwtService.generateToken(user);
+
+        double before = Microbenchmark.nanosPerOp("filter, parser per claim", 10, 2_000, () -> {
+            String username = freshParse(token).getSubject();
+            boolean valid = freshParse(token).getSubject().equals(user.getUsername())
+                    && !freshParse(token).getExpiration().before(new Date());
+            return valid ? username : null;
+        });
+        double after = Microbenchmark.nanosPerOp("filter, one parse", 10, 2_000, () -> {
+            Claims claims = jwtService.parseClaims(token);
+            return jwtService.isTokenValid(claims, user) ? claims.getSubject() : null;
+        });
+
+        assertTrue(after * 2 < before, "one parse took " + after + " ns, three took " + before + " ns");
+    }
+
+    private static Claims freshParse(String token) {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+}
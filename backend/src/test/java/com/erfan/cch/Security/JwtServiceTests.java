@@ -0,0 +1,110 @@
+package com.erfan.cch.Security;
+
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Models.User;
+import com.erfan.cch.Repo.UserRepository;
+import com.erfan.cch.Services.UserService;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtServiceTests {
+
+    private UserService userService;
+    private JwtService jwtService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User(42L, "Asha", "asha@example.com", "secret");
+        user.setUserType(UserType.VOLUNTEER);
+        userService = mock(UserService.class);
+        jwtService = new JwtService(userService);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void parsedClaimsCarryUsernameIdAndExpiry() {
+        String token = jwtService.generateToken(user);
+
+        Claims claims = jwtService.parseClaims(token);
+
+        assertEquals("asha@example.com", claims.getSubject());
+        assertEquals("42", claims.getId());
+        assertFalse(jwtService.isTokenExpired(claims));
+        assertTrue(jwtService.isTokenValid(claims, user));
+    }
+
+    @Test
+    void filterParsesTheTokenOnce() throws Exception {
+        String token = jwtService.generateToken(user);
+        JwtService spyService = spy(jwtService);
+        UserDetailsService userDetailsService = username -> user;
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(spyService, userDetailsService,
+                mock(TokenRevocationRegistry.class), "database");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), mock(FilterChain.class));
+
+        verify(spyService, times(1)).parseClaims(anyString());
+        verify(spyService, never()).extractUsername(anyString());
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void claimsModeAuthenticatesWithoutLoadingTheUser() throws Exception {
+        String token = jwtService.generateToken(user);
+        UserDetailsService userDetailsService = mock(UserDetailsService.class);
+        TokenRevocationRegistry registry = new TokenRevocationRegistry(mock(UserRepository.class));
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService, userDetailsService, registry, "claims");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), mock(FilterChain.class));
+
+        verifyNoInteractions(userDetailsService);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        AuthenticatedPrincipal principal = (AuthenticatedPrincipal) authentication.getPrincipal();
+        assertEquals(42L, principal.getId());
+        assertEquals(UserType.VOLUNTEER, principal.getRole());
+        assertEquals("VOLUNTEER", authentication.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void claimsModeRejectsTokensIssuedBeforeDeactivation() throws Exception {
+        String token = jwtService.generateToken(user);
+        UserRepository userRepository = mock(UserRepository.class);
+        User deactivated = new User(42L, "Asha", null, "secret");
+        deactivated.setTokensValidAfter(Instant.now());
+        when(userRepository.findById(42L)).thenReturn(Optional.of(deactivated));
+        TokenRevocationRegistry registry = new TokenRevocationRegistry(userRepository);
+        registry.refresh(42L);
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService, mock(UserDetailsService.class), registry, "claims");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), mock(FilterChain.class));
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+}
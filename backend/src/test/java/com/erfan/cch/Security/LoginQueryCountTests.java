@@ -0,0 +1,72 @@
+package com.erfan.cch.Security;
+
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Models.User;
+import com.erfan.cch.Repo.UserRepository;
+import com.erfan.cch.Security.Dto.AuthenticationRequest;
+import com.erfan.cch.Security.Dto.AuthenticationResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class LoginQueryCountTests {
+
+    private static final String EMAIL = "login-count@example.com";
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private AuthenticationService authenticationService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!userRepository.existsByEmail(EMAIL)) {
+            User admin = new User();
+            admin.setEmail(EMAIL);
+            admin.setPassword(PASSWORD);
+            admin.setName("Login Count");
+            admin.setUserType(UserType.ADMIN);
+            authenticationService.registerUser(admin);
+        }
+        userDetailsCache.evict(EMAIL);
+        statistics.clear();
+    }
+
+    @Test
+    void coldLoginLoadsTheUserOnce() {
+        AuthenticationResponse response = authenticationService.authenticate(new AuthenticationRequest(EMAIL, PASSWORD));
+
+        assertEquals(EMAIL, jwtService.extractUsername(response.getToken()));
+        assertEquals(1, statistics.getPrepareStatementCount(),
+                "login should issue a single user lookup");
+    }
+
+    @Test
+    void warmLoginIsServedFromTheUserCache() {
+        authenticationService.authenticate(new AuthenticationRequest(EMAIL, PASSWORD));
+        statistics.clear();
+
+        authenticationService.authenticate(new AuthenticationRequest(EMAIL, PASSWORD));
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+}
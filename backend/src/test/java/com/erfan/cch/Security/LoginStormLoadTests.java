@@ -0,0 +1,135 @@
+package com.erfan.cch.Security;
+
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.VolunteerRepository;
+import com.erfan.cch.Security.Dto.AuthenticationRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A login storm over real HTTP against a small Tomcat pool, with real BCrypt at a cost where
+ * each check takes a noticeable share of a second. Reads sent while every hashing thread is
+ * busy must still come back quickly.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        // Its own in-memory database, so this context's create-drop leaves the shared one alone
+        "spring.datasource.url=jdbc:h2:mem:cch-login-storm;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "server.tomcat.threads.max=" + LoginStormLoadTests.REQUEST_THREADS,
+        "cch.security.hashing.threads=" + LoginStormLoadTests.HASHING_THREADS,
+        "cch.security.hashing.queue-capacity=2",
+        "cch.security.hashing.timeout-ms=10000",
+        "cch.security.password.bcrypt-strength=12"})
+@ActiveProfiles("h2")
+class LoginStormLoadTests {
+
+    static final int REQUEST_THREADS = 8;
+    static final int HASHING_THREADS = 2;
+    private static final int STORM_CLIENTS = 24;
+    private static final long STORM_MILLIS = 4_000;
+    // Hashing on the request threads, 24 logins at this cost would keep all 8 busy for seconds
+    private static final long READ_BOUND_MILLIS = 1_000;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private VolunteerRepository volunteerRepository;
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
+    @Autowired
+    private JwtService jwtService;
+
+    @Test
+    void readsKeepTheirLatencyWhileLoginsSaturateTheHashingPool() throws Exception {
+        Volunteer volunteer = new Volunteer();
+        volunteer.setName("Storm Volunteer");
+        volunteer.setEmail("storm-" + UUID.randomUUID() + "@cch.org");
+        volunteer.setPassword(passwordEncoder.encode("storm-password"));
+        volunteer.setUserType(UserType.VOLUNTEER);
+        volunteer.setStatus(Status.ACTIVE);
+        volunteerRepository.save(volunteer);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(jwtService.generateToken(volunteer));
+        HttpEntity<Void> read = new HttpEntity<>(headers);
+        for (int i = 0; i < 5; i++) {
+            timeRead(read);
+        }
+        long quiet = timeRead(read);
+
+        AuthenticationRequest login = new AuthenticationRequest(volunteer.getEmail(), "storm-password");
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        long stormEnd = System.currentTimeMillis() + STORM_MILLIS;
+        ExecutorService clients = Executors.newFixedThreadPool(STORM_CLIENTS);
+        List<Future<?>> storm = new ArrayList<>();
+        List<Long> saturatedReads = new ArrayList<>();
+        try {
+            for (int i = 0; i < STORM_CLIENTS; i++) {
+                storm.add(clients.submit(() -> {
+                    while (System.currentTimeMillis() < stormEnd) {
+                        ResponseEntity<String> response = restTemplate.postForEntity("/auth/authenticate", login, String.class);
+                        if (response.getStatusCode() == HttpStatus.OK) {
+                            accepted.incrementAndGet();
+                        } else {
+                            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+                            rejected.incrementAndGet();
+                            // What the app does on a 503: back off briefly, then retry
+                            Thread.sleep(20);
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            while (System.currentTimeMillis() < stormEnd) {
+                if (passwordEncoder.getActiveCount() == HASHING_THREADS) {
+                    saturatedReads.add(timeRead(read));
+                }
+                Thread.sleep(25);
+            }
+            for (Future<?> client : storm) {
+                client.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        System.out.printf("login storm: %d accepted, %d rejected; %d reads while hashing was saturated, "
+                        + "worst %d ms (quiet %d ms)%n",
+                accepted.get(), rejected.get(), saturatedReads.size(), Collections.max(saturatedReads), quiet);
+        assertTrue(accepted.get() > 0);
+        assertTrue(rejected.get() > 0);
+        assertTrue(saturatedReads.size() >= 10);
+        assertTrue(Collections.max(saturatedReads) < READ_BOUND_MILLIS,
+                "worst read during the storm took " + Collections.max(saturatedReads) + " ms");
+    }
+
+    private long timeRead(HttpEntity<Void> read) {
+        long start = System.nanoTime();
+        ResponseEntity<String> response = restTemplate.exchange("/volunteer/consumables", HttpMethod.GET, read, String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,48 @@
+package com.erfan.cch.Security;
+
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Models.User;
+import com.erfan.cch.Repo.UserRepository;
+import com.erfan.cch.Security.Dto.AuthenticationRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class PasswordUpgradeTests {
+
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private AuthenticationService authenticationService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void legacyHashIsRehashedOnSuccessfulLogin() {
+        User legacy = new User();
+        legacy.setEmail("legacy-hash@example.com");
+        legacy.setName("Legacy");
+        legacy.setUserType(UserType.ADMIN);
+        // Stored the way the old default-strength encoder did it: no {id} prefix
+        legacy.setPassword(new BCryptPasswordEncoder(4).encode(PASSWORD));
+        legacy = userRepository.save(legacy);
+        assertTrue(passwordEncoder.upgradeEncoding(legacy.getPassword()));
+
+        authenticationService.authenticate(new AuthenticationRequest(legacy.getEmail(), PASSWORD));
+
+        String stored = userRepository.findById(legacy.getId()).orElseThrow().getPassword();
+        assertTrue(stored.startsWith("{bcrypt}"));
+        assertFalse(passwordEncoder.upgradeEncoding(stored));
+        assertTrue(passwordEncoder.matches(PASSWORD, stored));
+        authenticationService.authenticate(new AuthenticationRequest(legacy.getEmail(), PASSWORD));
+    }
+}
@@ -0,0 +1,92 @@
+package com.erfan.cch.Security;
+
+import com.erfan.cch.Models.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserDetailsCacheTests {
+
+    @Test
+    void repeatedLookupsHitTheCacheUntilEvicted() {
+        UserDetailsService database = mock(UserDetailsService.class);
+        when(database.loadUserByUsername(anyString()))
+                .thenAnswer(inv -> new User(1L, "Asha", inv.getArgument(0), "hash"));
+        UserDetailsCache cache = new UserDetailsCache(database, 10, 300);
+
+        UserDetails first = cache.loadUserByUsername("Asha@Example.com ");
+        UserDetails second = cache.loadUserByUsername("asha@example.com");
+
+        assertSame(first, second);
+        verify(database, times(1)).loadUserByUsername(anyString());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.evict("ASHA@example.com");
+        cache.loadUserByUsername("asha@example.com");
+
+        verify(database, times(2)).loadUserByUsername(anyString());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void evictionDuringALoadKeepsTheLoadedUserOutOfTheCache() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch evicted = new CountDownLatch(1);
+        UserDetailsService database = mock(UserDetailsService.class);
+        when(database.loadUserByUsername(anyString()))
+                .thenAnswer(inv -> {
+                    // Read the row, then stall while the volunteer is deleted and evicted
+                    User stale = new User(1L, "Asha", inv.getArgument(0), "hash");
+                    loadStarted.countDown();
+                    assertTrue(evicted.await(5, TimeUnit.SECONDS));
+                    return stale;
+                })
+                .thenAnswer(inv -> new User(1L, "Asha", inv.getArgument(0), "new-hash"));
+        UserDetailsCache cache = new UserDetailsCache(database, 10, 300);
+
+        ExecutorService requestThread = Executors.newSingleThreadExecutor();
+        try {
+            Future<UserDetails> racing = requestThread.submit(() -> cache.loadUserByUsername("asha@example.com"));
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+            cache.evict("asha@example.com");
+            evicted.countDown();
+            assertEquals("hash", racing.get(5, TimeUnit.SECONDS).getPassword());
+        } finally {
+            requestThread.shutdownNow();
+        }
+
+        assertEquals(0, cache.getSize());
+        assertEquals("new-hash", cache.loadUserByUsername("asha@example.com").getPassword());
+        assertEquals("new-hash", cache.loadUserByUsername("asha@example.com").getPassword());
+        verify(database, times(2)).loadUserByUsername(anyString());
+    }
+
+    @Test
+    void sizeIsBoundedAndExpiredEntriesAreReloaded() {
+        UserDetailsService database = mock(UserDetailsService.class);
+        when(database.loadUserByUsername(anyString()))
+                .thenAnswer(inv -> new User(1L, "x", inv.getArgument(0), "hash"));
+        UserDetailsCache bounded = new UserDetailsCache(database, 2, 300);
+        bounded.loadUserByUsername("a@x.com");
+        bounded.loadUserByUsername("b@x.com");
+        bounded.loadUserByUsername("c@x.com");
+        assertEquals(2, bounded.getSize());
+        assertEquals(1, bounded.getEvictions());
+
+        UserDetailsCache expiring = new UserDetailsCache(database, 10, 0);
+        expiring.loadUserByUsername("a@x.com");
+        expiring.loadUserByUsername("a@x.com");
+        assertEquals(0, expiring.getHits());
+        assertEquals(2, expiring.getMisses());
+    }
+}
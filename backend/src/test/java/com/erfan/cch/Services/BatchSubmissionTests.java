@@ -0,0 +1,101 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Dto.VisitReportRequest;
+import com.erfan.cch.Dto.VisitReportResultDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class BatchSubmissionTests {
+
+    @Autowired
+    private VolunteerService volunteerService;
+    @Autowired
+    private ConsumableRepository consumableRepository;
+    @Autowired
+    private PatientVisitReportRepository reportRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void stockIsAllocatedInRequestOrderAndEachReportGetsItsOwnResult() {
+        Consumable syringes = consumableRepository.save(new Consumable("Syringe", "Injection", 10, "pieces", Status.ACTIVE));
+        Long first = newVisit();
+        Long second = newVisit();
+        Long third = newVisit();
+
+        List<VisitReportResultDto> results = volunteerService.submitVisitReports(List.of(
+                request(first, syringes.getId(), 6),
+                request(second, syringes.getId(), 6),
+                request(third, syringes.getId(), 4),
+                request(-1L, syringes.getId(), 1),
+                request(first, syringes.getId(), 1)));
+
+        assertEquals(List.of(true, false, true, false, false),
+                results.stream().map(VisitReportResultDto::isSubmitted).toList());
+        assertEquals("Not enough stock for consumable: Syringe", results.get(1).getMessage());
+        assertEquals("Visit not found", results.get(3).getMessage());
+        assertEquals(0, consumableRepository.findById(syringes.getId()).orElseThrow().getStockQuantity());
+        assertEquals(Status.COMPLETED, reportRepository.findById(first).orElseThrow().getStatus());
+        assertEquals(Status.PENDING, reportRepository.findById(second).orElseThrow().getStatus());
+        assertEquals(10, jdbcTemplate.queryForObject(
+                "SELECT SUM(quantity_used) FROM visit_consumable_usage WHERE consumable_id = ?", Integer.class,
+                syringes.getId()));
+    }
+
+    @Test
+    void resubmittedReportsGiveBackWhatTheyNoLongerUse() {
+        Consumable dressings = consumableRepository.save(new Consumable("Dressing", "Wound care", 10, "pieces", Status.ACTIVE));
+        Long first = newVisit();
+        Long second = newVisit();
+        assertTrue(volunteerService.submitVisitReports(List.of(request(first, dressings.getId(), 8)))
+                .get(0).isSubmitted());
+
+        // The first report goes down to 3, which frees the 5 the second one needs on top of the 2 left
+        List<VisitReportResultDto> results = volunteerService.submitVisitReports(List.of(
+                request(first, dressings.getId(), 3),
+                request(second, dressings.getId(), 7)));
+
+        assertEquals(List.of(true, true), results.stream().map(VisitReportResultDto::isSubmitted).toList());
+        assertEquals(0, consumableRepository.findById(dressings.getId()).orElseThrow().getStockQuantity());
+        assertEquals(10, jdbcTemplate.queryForObject(
+                "SELECT SUM(quantity_used) FROM visit_consumable_usage WHERE consumable_id = ?", Integer.class,
+                dressings.getId()));
+    }
+
+    private Long newVisit() {
+        PatientVisitReport visit = new PatientVisitReport();
+        visit.setVisitCode("BATCH-" + UUID.randomUUID());
+        visit.setVisitDate(LocalDate.now());
+        visit.setStatus(Status.PENDING);
+        return reportRepository.save(visit).getId();
+    }
+
+    private VisitReportRequest request(Long visitId, Long consumableId, int quantity) {
+        ConsumableUsageDto usage = new ConsumableUsageDto();
+        usage.setConsumableId(consumableId);
+        usage.setQuantity(quantity);
+        VisitReportRequest request = new VisitReportRequest();
+        request.setVisitId(visitId);
+        request.setProcedureIds(List.of());
+        request.setConsumables(List.of(usage));
+        request.setStatus(Status.COMPLETED);
+        return request;
+    }
+}
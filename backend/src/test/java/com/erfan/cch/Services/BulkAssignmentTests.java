@@ -0,0 +1,101 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.AssignmentResultDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.IdGeneratorInitializer;
+import com.erfan.cch.TestFixtures;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class BulkAssignmentTests {
+
+    // A week of visits across 500 patients, which used to trip over random visit-code collisions
+    private static final int PATIENTS = 500;
+    private static final int DAYS = 7;
+
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private IdGeneratorInitializer idGeneratorInitializer;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void assignmentInsertsInBatchesAndSkipsPairsAlreadyAssigned() {
+        Volunteer volunteer = fixtures.volunteer();
+        List<Long> patientIds = new ArrayList<>();
+        for (int i = 0; i < PATIENTS; i++) {
+            patientIds.add(fixtures.patient().getId());
+        }
+        LocalDate monday = LocalDate.now().plusDays(7);
+        List<LocalDate> dates = new ArrayList<>();
+        for (int day = 0; day < DAYS; day++) {
+            dates.add(monday.plusDays(day));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        int created = adminService.assignVolunteerToPatients(volunteer.getId(), patientIds, dates).getCreated();
+
+        assertEquals(PATIENTS * DAYS, created);
+        assertEquals(PATIENTS * DAYS, statistics.getEntityInsertCount());
+        // One id block and one insert batch per 50 visits, not one statement per visit
+        assertTrue(statistics.getPrepareStatementCount() < created / 10,
+                "expected batched inserts, got " + statistics.getPrepareStatementCount() + " statements");
+
+        AssignmentResultDto resent = adminService.assignVolunteerToPatients(volunteer.getId(), patientIds, dates);
+        assertEquals(0, resent.getCreated());
+        assertEquals(PATIENTS * DAYS, resent.getSkipped());
+        assertEquals(PATIENTS * DAYS, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM patient_visit_report WHERE volunteer_id = ?", Integer.class, volunteer.getId()));
+    }
+
+    @Test
+    void assignmentWithoutDatesOrPatientsIsRejected() {
+        Volunteer volunteer = fixtures.volunteer();
+        Long patientId = fixtures.patient().getId();
+        assertThrows(IllegalArgumentException.class,
+                () -> adminService.assignVolunteerToPatients(volunteer.getId(), List.of(patientId), List.of()));
+        assertThrows(IllegalArgumentException.class,
+                () -> adminService.assignVolunteerToPatients(volunteer.getId(), List.of(), List.of(LocalDate.now())));
+        assertThrows(IllegalArgumentException.class,
+                () -> adminService.assignVolunteerToPatients(volunteer.getId(), List.of(patientId), (LocalDate) null));
+        assertThrows(IllegalArgumentException.class,
+                () -> adminService.assignVolunteerToPatients(volunteer.getId(), List.of(patientId),
+                        Arrays.asList(LocalDate.now(), null)));
+    }
+
+    @Test
+    void generatorIsMovedPastIdsInsertedOutsideIt() {
+        jdbcTemplate.update("INSERT INTO patient_visit_report (id, visit_code, status) VALUES (?, ?, ?)",
+                1_000_000L, "LEGACY-" + UUID.randomUUID(), Status.PENDING.ordinal());
+
+        idGeneratorInitializer.alignVisitIds();
+
+        Long nextVal = jdbcTemplate.queryForObject("SELECT next_val FROM " + PatientVisitReport.ID_GENERATOR_TABLE
+                + " WHERE sequence_name = ?", Long.class, PatientVisitReport.ID_GENERATOR_KEY);
+        assertTrue(nextVal - PatientVisitReport.ID_ALLOCATION_SIZE >= 1_000_000L);
+    }
+}
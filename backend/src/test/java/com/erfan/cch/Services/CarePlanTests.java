@@ -0,0 +1,205 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.CarePlanDto;
+import com.erfan.cch.Dto.CarePlanRequest;
+import com.erfan.cch.Enums.RecurrenceType;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.CarePlanRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.Repo.VolunteerRepository;
+import com.erfan.cch.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class CarePlanTests {
+
+    @Autowired
+    private CarePlanService carePlanService;
+    @Autowired
+    private CarePlanRepository carePlanRepository;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private VolunteerRepository volunteerRepository;
+    @Autowired
+    private PatientVisitReportRepository reportRepository;
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void weeklyPlanSkipsDatesThePatientAlreadyHasAndIsIncremental() {
+        Patient patient = fixtures.patient();
+        Volunteer volunteer = fixtures.volunteer("Nurse");
+        LocalDate today = LocalDate.now();
+        LocalDate firstTuesday = today.plusDays((DayOfWeek.TUESDAY.getValue() - today.getDayOfWeek().getValue() + 7) % 7);
+        PatientVisitReport existing = new PatientVisitReport();
+        existing.setPatient(patient);
+        existing.setVolunteer(volunteer);
+        existing.setVisitDate(firstTuesday);
+        existing.setStatus(Status.PENDING);
+        reportRepository.save(existing);
+
+        CarePlanRequest request = new CarePlanRequest();
+        request.setPatientId(patient.getId());
+        request.setVolunteerId(volunteer.getId());
+        request.setRecurrence(RecurrenceType.WEEKLY);
+        request.setDaysOfWeek(Set.of(DayOfWeek.TUESDAY));
+        request.setStartDate(today);
+        CarePlanDto plan = carePlanService.createPlan(request);
+
+        // 14-day horizon: two or three Tuesdays, the first one was already booked by hand
+        List<LocalDate> dates = visitDates(patient);
+        assertEquals(firstTuesday, dates.get(0));
+        assertTrue(dates.size() >= 2);
+        assertTrue(dates.stream().allMatch(d -> d.getDayOfWeek() == DayOfWeek.TUESDAY));
+        assertEquals(dates.size(), dates.stream().distinct().count());
+
+        assertEquals(0, carePlanService.materialize(carePlanRepository.findAllById(List.of(plan.getId())), today));
+        assertEquals(1, carePlanService.materialize(carePlanRepository.findAllById(List.of(plan.getId())),
+                today.plusDays(7)));
+    }
+
+    @Test
+    void specializationPlanSpreadsVisitsAcrossTheLeastBusyVolunteers() {
+        String specialization = "Physio-" + UUID.randomUUID();
+        Volunteer first = fixtures.volunteer(specialization);
+        Volunteer second = fixtures.volunteer(specialization);
+        Patient patientA = fixtures.patient();
+        Patient patientB = fixtures.patient();
+        LocalDate today = LocalDate.now();
+
+        for (Patient patient : List.of(patientA, patientB)) {
+            CarePlanRequest request = new CarePlanRequest();
+            request.setPatientId(patient.getId());
+            request.setSpecialization(specialization);
+            request.setRecurrence(RecurrenceType.EVERY_N_DAYS);
+            request.setIntervalDays(3);
+            request.setStartDate(today);
+            carePlanService.createPlan(request);
+        }
+
+        // Every 3 days over a 14-day horizon: today, +3, +6, +9, +12
+        assertEquals(List.of(today, today.plusDays(3), today.plusDays(6), today.plusDays(9), today.plusDays(12)),
+                visitDates(patientA));
+        for (int offset = 0; offset <= 12; offset += 3) {
+            LocalDate date = today.plusDays(offset);
+            assertEquals(1, countVisits(first, date), "first volunteer on " + date);
+            assertEquals(1, countVisits(second, date), "second volunteer on " + date);
+        }
+    }
+
+    @Test
+    void plansOfRemovedPatientsAndVolunteersStopScheduling() {
+        Volunteer leaving = fixtures.volunteer("Nurse");
+        Patient staying = fixtures.patient();
+        Patient dying = fixtures.patient();
+        CarePlanDto volunteerPlan = carePlanService.createPlan(dailyPlan(staying, fixtures.volunteer("Nurse")));
+        CarePlanDto leavingPlan = carePlanService.createPlan(dailyPlan(fixtures.patient(), leaving));
+        CarePlanDto patientPlan = carePlanService.createPlan(dailyPlan(dying, fixtures.volunteer("Nurse")));
+        // Start over as if none of the plans had run yet
+        for (CarePlanDto plan : List.of(volunteerPlan, leavingPlan, patientPlan)) {
+            jdbcTemplate.update("DELETE FROM patient_visit_report WHERE patient_id = ?", plan.getPatientId());
+            jdbcTemplate.update("UPDATE care_plan SET materialized_through = NULL WHERE id = ?", plan.getId());
+        }
+
+        leaving.setStatus(Status.INACTIVE);
+        volunteerRepository.save(leaving);
+        adminService.deletePatient(dying.getId());
+        carePlanService.materializeAll();
+
+        assertFalse(visitDates(staying).isEmpty());
+        assertTrue(jdbcTemplate.queryForList("SELECT visit_date FROM patient_visit_report WHERE patient_id = ?",
+                LocalDate.class, leavingPlan.getPatientId()).isEmpty());
+        assertTrue(visitDates(dying).isEmpty());
+        assertEquals(Status.INACTIVE, carePlanRepository.findById(patientPlan.getId()).orElseThrow().getStatus());
+        assertThrows(IllegalArgumentException.class, () -> carePlanService.createPlan(dailyPlan(dying, fixtures.volunteer("Nurse"))));
+    }
+
+    @Test
+    void concurrentRunsNeverBookAPatientTwiceOnOneDay() throws Exception {
+        Patient patient = fixtures.patient();
+        carePlanService.createPlan(dailyPlan(patient, fixtures.volunteer("Nurse")));
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            for (int round = 0; round < 5; round++) {
+                jdbcTemplate.update("DELETE FROM patient_visit_report WHERE patient_id = ?", patient.getId());
+                jdbcTemplate.update("UPDATE care_plan SET materialized_through = NULL WHERE patient_id = ?", patient.getId());
+
+                // The nightly job on two nodes and a second plan for the same patient, all at once
+                Volunteer second = fixtures.volunteer("Nurse");
+                CyclicBarrier start = new CyclicBarrier(3);
+                List<Future<?>> runs = List.of(
+                        pool.submit(() -> { start.await(); return carePlanService.materializeAll(); }),
+                        pool.submit(() -> { start.await(); return carePlanService.materializeAll(); }),
+                        pool.submit(() -> { start.await(); return carePlanService.createPlan(dailyPlan(patient, second)); }));
+                for (Future<?> run : runs) {
+                    run.get(30, TimeUnit.SECONDS);
+                }
+
+                List<LocalDate> dates = visitDates(patient);
+                assertEquals(dates.size(), dates.stream().distinct().count(), "round " + round);
+                assertEquals(LocalDate.now(), dates.get(0));
+                assertEquals(LocalDate.now().plusDays(14), dates.get(dates.size() - 1));
+                assertEquals(15, dates.size(), "round " + round);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void invalidPlanIsRejected() {
+        CarePlanRequest request = new CarePlanRequest();
+        request.setPatientId(fixtures.patient().getId());
+        request.setSpecialization("Nurse");
+        request.setRecurrence(RecurrenceType.EVERY_N_DAYS);
+        request.setIntervalDays(0);
+        request.setStartDate(LocalDate.now());
+        assertThrows(IllegalArgumentException.class, () -> carePlanService.createPlan(request));
+    }
+
+    private static CarePlanRequest dailyPlan(Patient patient, Volunteer volunteer) {
+        CarePlanRequest request = new CarePlanRequest();
+        request.setPatientId(patient.getId());
+        request.setVolunteerId(volunteer.getId());
+        request.setRecurrence(RecurrenceType.EVERY_N_DAYS);
+        request.setIntervalDays(1);
+        request.setStartDate(LocalDate.now());
+        return request;
+    }
+
+    private List<LocalDate> visitDates(Patient patient) {
+        return jdbcTemplate.queryForList(
+                "SELECT visit_date FROM patient_visit_report WHERE patient_id = ? ORDER BY visit_date",
+                LocalDate.class, patient.getId());
+    }
+
+    private int countVisits(Volunteer volunteer, LocalDate date) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM patient_visit_report WHERE volunteer_id = ? AND visit_date = ?",
+                Integer.class, volunteer.getId(), date);
+    }
+}
@@ -0,0 +1,99 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class ConsumableStockConcurrencyTests {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 400;
+    private static final int INITIAL_STOCK = 2_000;
+
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private ConsumableRepository consumableRepository;
+    @Autowired
+    private PatientVisitReportRepository reportRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentDeductionsNeverLoseUpdatesOrOversell() throws Exception {
+        Consumable gloves = consumableRepository.save(new Consumable("Gloves", "Hygiene", INITIAL_STOCK, "pairs", Status.ACTIVE));
+        List<Long> visitIds = new ArrayList<>();
+        for (int i = 0; i < THREADS / 2 * OPERATIONS_PER_THREAD; i++) {
+            PatientVisitReport visit = new PatientVisitReport();
+            visit.setVisitCode("STRESS-" + i);
+            visit.setVisitDate(LocalDate.now());
+            visit.setStatus(Status.PENDING);
+            visitIds.add(reportRepository.save(visit).getId());
+        }
+
+        AtomicInteger adminDeducted = new AtomicInteger();
+        AtomicInteger nextVisit = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            boolean viaReports = t % 2 == 0;
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    try {
+                        if (viaReports) {
+                            adminService.submitVisitReport(visitIds.get(nextVisit.getAndIncrement()), List.of(),
+                                    List.of(usage(gloves.getId())), Status.COMPLETED, null);
+                        } else {
+                            adminService.updateStock(gloves.getId(), 1, false);
+                            adminDeducted.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        // Out of stock or lock timeout: the transaction rolled back, nothing to account for
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2, TimeUnit.MINUTES));
+
+        int finalStock = consumableRepository.findById(gloves.getId()).orElseThrow().getStockQuantity();
+        Integer recordedUsage = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity_used), 0) FROM visit_consumable_usage WHERE consumable_id = ?",
+                Integer.class, gloves.getId());
+
+        // 3,200 attempts against 2,000 units: every unit that left the shelf is accounted for exactly once
+        assertTrue(finalStock >= 0);
+        assertEquals(INITIAL_STOCK, finalStock + recordedUsage + adminDeducted.get());
+    }
+
+    private static ConsumableUsageDto usage(Long consumableId) {
+        ConsumableUsageDto dto = new ConsumableUsageDto();
+        dto.setConsumableId(consumableId);
+        dto.setQuantity(1);
+        return dto;
+    }
+}
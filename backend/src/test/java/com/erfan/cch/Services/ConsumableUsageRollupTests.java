@@ -0,0 +1,154 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Dto.ConsumableUsageSummaryDto;
+import com.erfan.cch.Dto.VisitReportRequest;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class ConsumableUsageRollupTests {
+
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private VisitCompletionService visitCompletionService;
+    @Autowired
+    private ConsumableUsageRollup consumableUsageRollup;
+    @Autowired
+    private ConsumableRepository consumableRepository;
+    @Autowired
+    private PatientVisitReportRepository reportRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Consumable gloves;
+    private Consumable syringes;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        gloves = consumableRepository.save(new Consumable("Gloves " + suffix, "Test", 1_000, "pairs", Status.ACTIVE));
+        syringes = consumableRepository.save(new Consumable("Syringes " + suffix, "Test", 1_000, "pieces", Status.ACTIVE));
+    }
+
+    @Test
+    void resubmissionMovesUsageInsteadOfAddingItTwice() {
+        LocalDate today = LocalDate.now();
+        PatientVisitReport visit = newVisit(today);
+
+        adminService.submitVisitReport(visit.getId(), List.of(), List.of(usage(gloves, 3), usage(syringes, 2)),
+                Status.COMPLETED, "done");
+        assertEquals(Map.of(gloves.getId(), 3L, syringes.getId(), 2L), usageOn(today));
+
+        adminService.submitVisitReport(visit.getId(), List.of(), List.of(usage(gloves, 1)), Status.COMPLETED, "fixed");
+        assertEquals(Map.of(gloves.getId(), 1L), usageOn(today));
+        assertEquals(joinedUsage(today), usageOn(today));
+
+        // No longer completed: its usage drops out of the summary like it did with the join
+        adminService.submitVisitReport(visit.getId(), List.of(), List.of(usage(gloves, 1)), Status.FAILED, "failed");
+        assertEquals(Map.of(), usageOn(today));
+    }
+
+    @Test
+    void batchCountsOnlyCompletedReportsAndRebuildAgrees() {
+        LocalDate today = LocalDate.now();
+        PatientVisitReport completed = newVisit(today);
+        PatientVisitReport failed = newVisit(today);
+        PatientVisitReport earlier = newVisit(today.minusDays(3));
+        // Completed before this change: usage rows exist but were never rolled up
+        jdbcTemplate.update("UPDATE patient_visit_report SET status = ?, completed_date = ? WHERE id = ?",
+                Status.COMPLETED.ordinal(), today.minusDays(3), earlier.getId());
+        jdbcTemplate.update("INSERT INTO visit_consumable_usage (visit_report_id, consumable_id, quantity_used) VALUES (?, ?, ?)",
+                earlier.getId(), syringes.getId(), 7);
+
+        visitCompletionService.completeBatch(List.of(
+                request(completed, Status.COMPLETED, usage(gloves, 4)),
+                request(failed, Status.FAILED, usage(gloves, 5))));
+        assertEquals(Map.of(gloves.getId(), 4L), usageOn(today));
+        assertEquals(Map.of(), usageOn(today.minusDays(3)));
+
+        consumableUsageRollup.rebuild();
+        assertEquals(Map.of(gloves.getId(), 4L), usageOn(today));
+        assertEquals(Map.of(syringes.getId(), 7L), usageOn(today.minusDays(3)));
+        assertEquals(joinedUsage(today.minusDays(3)), usageOn(today.minusDays(3)));
+
+        // Resubmitting the backfilled visit takes its usage off the day it was counted on
+        visitCompletionService.completeBatch(List.of(request(earlier, Status.COMPLETED, usage(syringes, 2))));
+        assertEquals(Map.of(), usageOn(today.minusDays(3)));
+        assertEquals(Map.of(gloves.getId(), 4L, syringes.getId(), 2L), usageOn(today));
+
+        Map<Long, Long> open = new HashMap<>();
+        adminService.getConsumableUsageSummary(null, null).stream()
+                .filter(dto -> dto.getConsumableId().equals(gloves.getId()) || dto.getConsumableId().equals(syringes.getId()))
+                .forEach(dto -> open.put(dto.getConsumableId(), dto.getTotalQuantityUsed()));
+        assertEquals(Map.of(gloves.getId(), 4L, syringes.getId(), 2L), open);
+    }
+
+    private Map<Long, Long> usageOn(LocalDate day) {
+        Map<Long, Long> usage = new HashMap<>();
+        for (ConsumableUsageSummaryDto dto : adminService.getConsumableUsageSummary(day, day)) {
+            if (dto.getConsumableId().equals(gloves.getId()) || dto.getConsumableId().equals(syringes.getId())) {
+                usage.put(dto.getConsumableId(), dto.getTotalQuantityUsed());
+            }
+        }
+        return usage;
+    }
+
+    // What the summary used to compute straight from the usage rows
+    private Map<Long, Long> joinedUsage(LocalDate day) {
+        Map<Long, Long> usage = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT u.consumable_id, SUM(u.quantity_used)
+                        FROM visit_consumable_usage u JOIN patient_visit_report v ON v.id = u.visit_report_id
+                        WHERE v.status = ? AND v.completed_date = ? AND u.consumable_id IN (?, ?)
+                        GROUP BY u.consumable_id
+                        """,
+                rs -> {
+                    usage.put(rs.getLong(1), rs.getLong(2));
+                },
+                Status.COMPLETED.ordinal(), day, gloves.getId(), syringes.getId());
+        return usage;
+    }
+
+    private PatientVisitReport newVisit(LocalDate date) {
+        PatientVisitReport visit = new PatientVisitReport();
+        visit.setVisitDate(date);
+        visit.setStatus(Status.PENDING);
+        return reportRepository.save(visit);
+    }
+
+    private static VisitReportRequest request(PatientVisitReport visit, Status status, ConsumableUsageDto... usage) {
+        VisitReportRequest request = new VisitReportRequest();
+        request.setVisitId(visit.getId());
+        request.setStatus(status);
+        request.setConsumables(new ArrayList<>(List.of(usage)));
+        return request;
+    }
+
+    private static ConsumableUsageDto usage(Consumable consumable, int quantity) {
+        ConsumableUsageDto dto = new ConsumableUsageDto();
+        dto.setConsumableId(consumable.getId());
+        dto.setQuantity(quantity);
+        return dto;
+    }
+}
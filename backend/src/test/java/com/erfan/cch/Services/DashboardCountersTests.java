@@ -0,0 +1,125 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Dto.DashboardStatsDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.Equipment;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class DashboardCountersTests {
+
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private VisitCompletionService visitCompletionService;
+    @Autowired
+    private DashboardCounters dashboardCounters;
+    @Autowired
+    private PatientVisitReportRepository reportRepository;
+    @Autowired
+    private ConsumableRepository consumableRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // Other tests write through repositories directly; start from the database's numbers
+        dashboardCounters.reconcile();
+    }
+
+    @Test
+    void dashboardIsServedWithoutQueriesAndMatchesTheDatabase() {
+        statistics.clear();
+        DashboardStatsDto stats = adminService.dashboardStats();
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        assertEquals(count("SELECT COUNT(*) FROM patient WHERE status = ? AND alivestatus = ?",
+                Status.ACTIVE.ordinal(), 0), stats.getTotalPatients());
+        assertEquals(count("SELECT COUNT(*) FROM users WHERE role = 'VOLUNTEER' AND status = ?",
+                Status.ACTIVE.ordinal()), stats.getActiveVolunteers());
+        assertEquals(count("SELECT COUNT(*) FROM patient_visit_report WHERE status = ?",
+                Status.PENDING.ordinal()), stats.getPendingVisits());
+    }
+
+    @Test
+    void addAndDeletePathsMoveTheCounters() {
+        DashboardStatsDto before = adminService.dashboardStats();
+
+        Patient patient = new Patient();
+        patient.setName("Counter Patient");
+        patient.setMobileNumber(UUID.randomUUID().toString().substring(0, 12));
+        adminService.addPatient(patient);
+        Equipment equipment = new Equipment();
+        equipment.setName("Counter Bed");
+        adminService.addEquipment(equipment);
+        assertEquals(before.getTotalPatients() + 1, adminService.dashboardStats().getTotalPatients());
+        assertEquals(before.getEquipmentsTotal() + 1, adminService.dashboardStats().getEquipmentsTotal());
+
+        adminService.deletePatient(patient.getId());
+        adminService.deletePatient(patient.getId());
+        adminService.deleteEquipment(equipment.getId());
+        adminService.deleteEquipment(equipment.getId());
+        assertEquals(before.getTotalPatients(), adminService.dashboardStats().getTotalPatients());
+        assertEquals(before.getEquipmentsTotal(), adminService.dashboardStats().getEquipmentsTotal());
+    }
+
+    @Test
+    void completionMovesAVisitFromPendingToCompletedOnlyOnCommit() {
+        Consumable gauze = consumableRepository.save(new Consumable("Gauze", "Dressing", 5, "rolls", Status.ACTIVE));
+        PatientVisitReport visit = new PatientVisitReport();
+        visit.setVisitDate(LocalDate.now());
+        visit.setStatus(Status.PENDING);
+        visit = reportRepository.save(visit);
+        dashboardCounters.reconcile();
+        DashboardStatsDto before = adminService.dashboardStats();
+        Long visitId = visit.getId();
+
+        // Not enough stock: the transaction rolls back and the counters must not move
+        assertThrows(RuntimeException.class, () -> visitCompletionService.complete(
+                visitId, List.of(), usage(gauze, 50), Status.COMPLETED, null));
+        assertEquals(before.getPendingVisits(), adminService.dashboardStats().getPendingVisits());
+
+        visitCompletionService.complete(visitId, List.of(), usage(gauze, 1), Status.COMPLETED, null);
+        visitCompletionService.complete(visitId, List.of(), usage(gauze, 1), Status.COMPLETED, null);
+        DashboardStatsDto after = adminService.dashboardStats();
+        assertEquals(before.getPendingVisits() - 1, after.getPendingVisits());
+        assertEquals(before.getTotalVisitDone() + 1, after.getTotalVisitDone());
+    }
+
+    private long count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Long.class, args);
+    }
+
+    private static List<ConsumableUsageDto> usage(Consumable consumable, int quantity) {
+        ConsumableUsageDto dto = new ConsumableUsageDto();
+        dto.setConsumableId(consumable.getId());
+        dto.setQuantity(quantity);
+        return List.of(dto);
+    }
+}
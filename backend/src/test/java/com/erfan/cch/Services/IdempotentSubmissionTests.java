@@ -0,0 +1,135 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.IdempotencyRecord;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.IdempotencyRecordRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.Security.AuthenticatedPrincipal;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class IdempotentSubmissionTests {
+
+    @Autowired
+    private VolunteerService volunteerService;
+    @Autowired
+    private ConsumableRepository consumableRepository;
+    @Autowired
+    private PatientVisitReportRepository reportRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private IdempotencyService idempotencyService;
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private Statistics statistics;
+    private Consumable gauze;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        gauze = consumableRepository.save(new Consumable("Gauze", "Dressing", 100, "rolls", Status.ACTIVE));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE,
+                new AuthenticatedPrincipal(42L, "field@cch.org", "Field Volunteer", UserType.VOLUNTEER));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void retryWithSameKeyReplaysWithoutDeductingStockAgain() {
+        PatientVisitReport visit = newVisit();
+        String key = UUID.randomUUID().toString();
+
+        String first = volunteerService.submitVisitReport(key, visit.getId(), List.of(), usage(3), Status.COMPLETED, null);
+        statistics.clear();
+        String retry = volunteerService.submitVisitReport(key, visit.getId(), List.of(), usage(3), Status.COMPLETED, null);
+
+        assertEquals(first, retry);
+        assertEquals(0, statistics.getPrepareStatementCount(), "a replay must not touch the database");
+        assertEquals(97, consumableRepository.findById(gauze.getId()).orElseThrow().getStockQuantity());
+    }
+
+    @Test
+    void failedSubmissionReleasesTheKey() {
+        PatientVisitReport visit = newVisit();
+        String key = UUID.randomUUID().toString();
+
+        assertThrows(RuntimeException.class,
+                () -> volunteerService.submitVisitReport(key, visit.getId(), List.of(), usage(500), Status.COMPLETED, null));
+        volunteerService.submitVisitReport(key, visit.getId(), List.of(), usage(5), Status.COMPLETED, null);
+
+        assertEquals(95, consumableRepository.findById(gauze.getId()).orElseThrow().getStockQuantity());
+    }
+
+    @Test
+    void keyReusedForAnotherVisitIsRejected() {
+        String key = UUID.randomUUID().toString();
+        volunteerService.submitVisitReport(key, newVisit().getId(), List.of(), usage(1), Status.COMPLETED, null);
+
+        Long otherVisit = newVisit().getId();
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> volunteerService.submitVisitReport(key, otherVisit, List.of(), usage(1), Status.COMPLETED, null));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY.value(), ex.getStatusCode().value());
+    }
+
+    @Test
+    void expiredRecordsArePurged() {
+        String key = UUID.randomUUID().toString();
+        volunteerService.submitVisitReport(key, newVisit().getId(), List.of(), usage(1), Status.COMPLETED, null);
+        IdempotencyRecord fresh = idempotencyRecordRepository.findByPrincipalIdAndIdempotencyKey(42L, key).orElseThrow();
+        assertTrue(fresh.getExpiresAt().isAfter(Instant.now()));
+        IdempotencyRecord expired = idempotencyRecordRepository.save(new IdempotencyRecord(42L, UUID.randomUUID().toString(),
+                newVisit().getId(), "done", Instant.now().minusSeconds(1)));
+
+        assertTrue(idempotencyService.purgeExpired() >= 1);
+        assertFalse(idempotencyRecordRepository.existsById(expired.getId()));
+        assertTrue(idempotencyRecordRepository.existsById(fresh.getId()));
+    }
+
+    private PatientVisitReport newVisit() {
+        PatientVisitReport visit = new PatientVisitReport();
+        visit.setVisitCode("IDEM-" + UUID.randomUUID());
+        visit.setVisitDate(LocalDate.now());
+        visit.setStatus(Status.PENDING);
+        return reportRepository.save(visit);
+    }
+
+    private List<ConsumableUsageDto> usage(int quantity) {
+        ConsumableUsageDto dto = new ConsumableUsageDto();
+        dto.setConsumableId(gauze.getId());
+        dto.setQuantity(quantity);
+        return List.of(dto);
+    }
+}
@@ -0,0 +1,134 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.CursorSliceDto;
+import com.erfan.cch.Dto.PatientDto;
+import com.erfan.cch.Dto.PatientVisitReportDto;
+import com.erfan.cch.Enums.AliveStatus;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Security.AuthenticatedPrincipal;
+import com.erfan.cch.TestFixtures;
+import com.erfan.cch.utils.KeysetCursor;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class KeysetPaginationTests {
+
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private VolunteerService volunteerService;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void walkingPatientCursorsReturnsEveryRowOnceWithoutCounting() {
+        String tag = "Keyset " + UUID.randomUUID();
+        for (int i = 0; i < 25; i++) {
+            fixtures.patient(tag, i % 5 == 0 ? AliveStatus.no : AliveStatus.yes);
+        }
+
+        List<Long> expected = adminService.getAllPatients(tag, false, PageRequest.of(0, 100, Sort.by("id")))
+                .map(PatientDto::getId).getContent();
+        assertEquals(25, expected.size());
+        assertEquals(expected, walk(cursor -> adminService.getPatientsAfter(tag, false, cursor, 7), PatientDto::getId));
+
+        List<Long> alive = walk(cursor -> adminService.getPatientsAfter(tag, true, cursor, 7), PatientDto::getId);
+        assertEquals(20, alive.size());
+        assertTrue(expected.containsAll(alive));
+
+        // The offset page pays for a COUNT(*) on top of the rows, the slice doesn't
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        adminService.getAllPatients(tag, false, PageRequest.of(1, 7, Sort.by("id")));
+        long pageStatements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        adminService.getPatientsAfter(tag, false, KeysetCursor.ofId(expected.get(6)), 7);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(2, pageStatements);
+    }
+
+    @Test
+    void visitCursorsFollowDateThenIdDescendingAcrossTies() {
+        Volunteer volunteer = fixtures.volunteer();
+        // A year nothing else in the shared test database uses, with several visits per day
+        LocalDate first = LocalDate.of(1990, 3, 1);
+        List<PatientVisitReport> visits = new ArrayList<>();
+        for (int i = 0; i < 17; i++) {
+            visits.add(fixtures.visit(null, volunteer, first.plusDays(i / 3), i % 4 == 0 ? Status.CANCELLED : Status.COMPLETED));
+        }
+        visits.sort(Comparator.comparing(PatientVisitReport::getVisitDate).thenComparing(PatientVisitReport::getId)
+                .reversed());
+        List<Long> expected = visits.stream().map(PatientVisitReport::getId).toList();
+
+        LocalDate last = first.plusDays(10);
+        assertEquals(expected, walk(cursor -> adminService.getVisitsBefore(null, first, last, cursor, 4),
+                PatientVisitReportDto::getId));
+        assertEquals(visits.stream().filter(v -> v.getStatus() == Status.CANCELLED).map(PatientVisitReport::getId).toList(),
+                walk(cursor -> adminService.getVisitsBefore(Status.CANCELLED, first, last, cursor, 2),
+                        PatientVisitReportDto::getId));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, new AuthenticatedPrincipal(
+                volunteer.getId(), volunteer.getEmail(), volunteer.getName(), UserType.VOLUNTEER));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        assertEquals(expected, walk(cursor -> volunteerService.getCompletedAndCancelledVisitsBefore(cursor, 5),
+                PatientVisitReportDto::getId));
+    }
+
+    @Test
+    void malformedCursorsAndSizesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> adminService.getPatientsAfter("", false, "not-a-cursor!", 5));
+        assertThrows(IllegalArgumentException.class,
+                () -> adminService.getVisitsBefore(null, null, null, KeysetCursor.ofId(5), 5));
+        assertThrows(IllegalArgumentException.class, () -> adminService.getVolunteersAfter("", null, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> adminService.getVolunteersAfter("", null, KeysetCursor.MAX_PAGE_SIZE + 1));
+    }
+
+    private static <T> List<Long> walk(Function<String, CursorSliceDto<T>> fetch, Function<T, Long> id) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        for (int page = 0; page < 100; page++) {
+            CursorSliceDto<T> slice = fetch.apply(cursor);
+            slice.getContent().forEach(row -> ids.add(id.apply(row)));
+            assertEquals(slice.isHasNext(), slice.getNextCursor() != null);
+            if (!slice.isHasNext()) {
+                return ids;
+            }
+            cursor = slice.getNextCursor();
+        }
+        throw new AssertionError("Cursor never reached the last page");
+    }
+}
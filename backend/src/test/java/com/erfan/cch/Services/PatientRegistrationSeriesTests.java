@@ -0,0 +1,107 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.RegistrationBucketDto;
+import com.erfan.cch.Dto.RegistrationSeriesDto;
+import com.erfan.cch.Enums.AliveStatus;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.Repo.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class PatientRegistrationSeriesTests {
+
+    // Years no other test registers patients in
+    private static final LocalDate FIRST = LocalDate.of(2001, 1, 1);
+    private static final int DAYS = 3 * 365;
+
+    @Autowired
+    private PatientRegistrationSeries patientRegistrationSeries;
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private PatientRepository patientRepository;
+
+    private final Random random = new Random(22);
+
+    @Test
+    void rangeCountsMatchTheDatabaseAndSeriesAddUp() {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            patients.add(patient(FIRST.plusDays(random.nextInt(DAYS))));
+        }
+        patientRepository.saveAll(patients);
+        patientRegistrationSeries.reload();
+
+        long seriesNanos = 0;
+        long queryNanos = 0;
+        int ranges = 500;
+        for (int q = 0; q < ranges; q++) {
+            LocalDate start = FIRST.plusDays(random.nextInt(DAYS) - 30);
+            LocalDate end = start.plusDays(random.nextInt(400));
+            long begin = System.nanoTime();
+            long fromSeries = patientRegistrationSeries.count(start, end);
+            seriesNanos += System.nanoTime() - begin;
+            begin = System.nanoTime();
+            long fromDatabase = patientRepository.countByDateBetween(start, end);
+            queryNanos += System.nanoTime() - begin;
+            assertEquals(fromDatabase, fromSeries, start + ".." + end);
+        }
+        System.out.printf("range count: %.2f us from the series, %.1f us as a query (H2, in memory)%n",
+                seriesNanos / 1000.0 / ranges, queryNanos / 1000.0 / ranges);
+
+        LocalDate yearStart = LocalDate.of(2002, 1, 1);
+        LocalDate yearEnd = LocalDate.of(2002, 12, 31);
+        RegistrationSeriesDto series = adminService.getRegistrationSeries(yearStart, yearEnd);
+        assertEquals(12, series.getMonthly().size());
+        assertEquals(patientRegistrationSeries.count(yearStart, yearEnd),
+                series.getMonthly().stream().mapToLong(RegistrationBucketDto::getNewPatients).sum());
+        RegistrationBucketDto firstWeek = series.getWeekly().get(0);
+        assertEquals(DayOfWeek.MONDAY, firstWeek.getPeriodStart().getDayOfWeek());
+        assertFalse(firstWeek.getPeriodStart().isAfter(yearStart));
+        assertEquals(firstWeek.getPeriodStart().plusDays(6), firstWeek.getPeriodEnd());
+        assertEquals(patientRegistrationSeries.count(firstWeek.getPeriodStart(), firstWeek.getPeriodEnd()),
+                firstWeek.getNewPatients());
+    }
+
+    @Test
+    void addPatientShowsUpInTodaysCountAndBackdatedRowsAreLoaded() {
+        LocalDate today = LocalDate.now();
+        int before = adminService.countNewPatients(today, today);
+        Patient patient = new Patient();
+        patient.setName("Series Patient");
+        patient.setMobileNumber(UUID.randomUUID().toString().substring(0, 12));
+        adminService.addPatient(patient);
+        assertEquals(before + 1, adminService.countNewPatients(today, today));
+        assertEquals(before + 1, adminService.countNewPatients(today, null));
+
+        LocalDate early = LocalDate.of(1999, 6, 1);
+        patientRepository.save(patient(early));
+        patientRegistrationSeries.reload();
+        assertEquals(1, adminService.countNewPatients(null, early));
+        assertEquals(patientRepository.countByDateLessThanEqual(today), adminService.countNewPatients(null, today));
+    }
+
+    private static Patient patient(LocalDate date) {
+        Patient patient = new Patient();
+        patient.setName("Series Patient");
+        patient.setMobileNumber(UUID.randomUUID().toString().substring(0, 12));
+        patient.setStatus(Status.ACTIVE);
+        patient.setAlivestatus(AliveStatus.yes);
+        patient.setDate(date);
+        return patient;
+    }
+}
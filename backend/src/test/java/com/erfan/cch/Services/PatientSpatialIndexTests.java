@@ -0,0 +1,196 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.MapMarkerDto;
+import com.erfan.cch.Enums.AliveStatus;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.utils.GeoUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatientSpatialIndexTests {
+
+    private static final int PATIENTS = 50_000;
+    private static final int QUERIES = 1_000;
+
+    private final Random random = new Random(17);
+    private PatientSpatialIndex index;
+    private List<Patient> patients;
+
+    @BeforeEach
+    void setUp() {
+        index = new PatientSpatialIndex(null);
+        patients = new ArrayList<>(PATIENTS);
+        // Roughly a district: 50k patients spread over ~60 x 60 km
+        for (long id = 1; id <= PATIENTS; id++) {
+            Patient patient = patient(id, 11.0 + random.nextDouble() * 0.55, 75.8 + random.nextDouble() * 0.55);
+            patients.add(patient);
+            index.update(patient);
+        }
+    }
+
+    @Test
+    void nearestMatchesFullScan() {
+        long indexNanos = 0;
+        long scanNanos = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            double lat = 10.95 + random.nextDouble() * 0.65;
+            double lon = 75.75 + random.nextDouble() * 0.65;
+
+            long start = System.nanoTime();
+            List<PatientSpatialIndex.Neighbor> nearest = index.nearest(lat, lon, 10);
+            indexNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            List<Patient> expected = scanNearest(lat, lon, 10);
+            scanNanos += System.nanoTime() - start;
+
+            assertEquals(10, nearest.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(expected.get(i).getId(), nearest.get(i).patientId());
+            }
+        }
+        System.out.printf("kNN(10) over %d patients: index %.1f us, full scan %.1f us per query%n",
+                PATIENTS, indexNanos / 1000.0 / QUERIES, scanNanos / 1000.0 / QUERIES);
+    }
+
+    @Test
+    void withinRadiusMatchesFullScan() {
+        long indexNanos = 0;
+        long scanNanos = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            double lat = 11.0 + random.nextDouble() * 0.55;
+            double lon = 75.8 + random.nextDouble() * 0.55;
+
+            long start = System.nanoTime();
+            List<PatientSpatialIndex.Neighbor> within = index.withinRadius(lat, lon, 1.5);
+            indexNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            long expected = patients.stream()
+                    .filter(p -> GeoUtils.distanceKm(lat, lon, p.getLatitude(), p.getLongitude()) <= 1.5)
+                    .count();
+            scanNanos += System.nanoTime() - start;
+
+            assertEquals(expected, within.size());
+        }
+        System.out.printf("radius(1.5 km) over %d patients: index %.1f us, full scan %.1f us per query%n",
+                PATIENTS, indexNanos / 1000.0 / QUERIES, scanNanos / 1000.0 / QUERIES);
+    }
+
+    @Test
+    void updatesMoveAndDropPatients() {
+        Patient moved = patients.get(0);
+        moved.setLatitude(-33.9);
+        moved.setLongitude(18.4);
+        index.update(moved);
+        assertEquals(moved.getId(), index.nearest(-33.9, 18.4, 1).get(0).patientId());
+
+        moved.setAlivestatus(AliveStatus.no);
+        index.update(moved);
+        assertNotEquals(moved.getId(), index.nearest(-33.9, 18.4, 1).get(0).patientId());
+        assertEquals(PATIENTS - 1, index.size());
+    }
+
+    @Test
+    void mapClustersAccountForEveryPatientAtEveryZoom() {
+        for (long id = PATIENTS + 1; id <= 2L * PATIENTS; id++) {
+            Patient patient = patient(id, 11.0 + random.nextDouble() * 0.55, 75.8 + random.nextDouble() * 0.55);
+            patients.add(patient);
+            index.update(patient);
+        }
+        for (int zoom = 0; zoom <= PatientSpatialIndex.MAX_CLUSTER_ZOOM; zoom++) {
+            List<MapMarkerDto> markers = index.markers(10.9, 75.7, 11.7, 76.5, zoom);
+            assertEquals(patients.size(), markers.stream().mapToInt(MapMarkerDto::getCount).sum(), "zoom " + zoom);
+        }
+
+        // A typical viewport over the district at zoom 12 (~0.09 degree tiles)
+        long start = System.nanoTime();
+        List<MapMarkerDto> clustered = List.of();
+        for (int q = 0; q < QUERIES; q++) {
+            clustered = index.markers(11.1, 75.9, 11.4, 76.3, 12);
+        }
+        long clusterNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        long inView = 0;
+        for (int q = 0; q < 100; q++) {
+            inView = patients.stream()
+                    .filter(p -> p.getLatitude() >= 11.1 && p.getLatitude() <= 11.4
+                            && p.getLongitude() >= 75.9 && p.getLongitude() <= 76.3)
+                    .count();
+        }
+        long scanNanos = System.nanoTime() - start;
+        System.out.printf("map zoom 12 over %d patients: %d markers in %.1f us; scanning %d in view took %.1f us%n",
+                patients.size(), clustered.size(), clusterNanos / 1000.0 / QUERIES, inView, scanNanos / 1000.0 / 100);
+        assertTrue(clustered.size() < 3_000);
+
+        // Past the clustering zooms every patient in the box is its own marker
+        List<MapMarkerDto> single = index.markers(11.2, 76.0, 11.21, 76.02, 16);
+        assertTrue(single.stream().allMatch(m -> m.getCount() == 1 && m.getPatientId() != null));
+        assertEquals(index.withinRadius(11.205, 76.01, 3).stream()
+                        .filter(n -> n.latitude() >= 11.2 && n.latitude() <= 11.21
+                                && n.longitude() >= 76.0 && n.longitude() <= 76.02)
+                        .count(),
+                single.size());
+
+        // A whole-world box at street zoom would be every patient: it falls back to the clusters
+        List<MapMarkerDto> world = index.markers(-90, -180, 90, 180, 22);
+        assertEquals(index.markers(-90, -180, 90, 180, PatientSpatialIndex.MAX_CLUSTER_ZOOM), world);
+        assertEquals(patients.size(), world.stream().mapToInt(MapMarkerDto::getCount).sum());
+        assertTrue(world.stream().anyMatch(m -> m.getCount() > 1));
+    }
+
+    @Test
+    void loneClusterReportsTheRemainingPatient() {
+        Patient first = patient(900_001L, -20.0001, 57.5001);
+        Patient second = patient(900_002L, -20.0002, 57.5002);
+        index.update(first);
+        index.update(second);
+        assertEquals(List.of(2), index.markers(-20.1, 57.4, -19.9, 57.6, 10).stream()
+                .map(MapMarkerDto::getCount).toList());
+
+        index.remove(second.getId());
+        MapMarkerDto marker = index.markers(-20.1, 57.4, -19.9, 57.6, 10).get(0);
+        assertEquals(first.getId(), marker.getPatientId());
+        assertEquals(-20.0001, marker.getLatitude());
+        assertEquals(57.5001, marker.getLongitude());
+
+        index.remove(first.getId());
+        assertTrue(index.markers(-20.1, 57.4, -19.9, 57.6, 10).isEmpty());
+    }
+
+    // What a query without the index has to do: measure every patient, keep the k closest
+    private List<Patient> scanNearest(double lat, double lon, int k) {
+        PriorityQueue<Map.Entry<Patient, Double>> best = new PriorityQueue<>(k + 1,
+                Map.Entry.<Patient, Double>comparingByValue().reversed());
+        for (Patient patient : patients) {
+            double distance = GeoUtils.distanceKm(lat, lon, patient.getLatitude(), patient.getLongitude());
+            if (best.size() < k) {
+                best.add(Map.entry(patient, distance));
+            } else if (distance < best.peek().getValue()) {
+                best.poll();
+                best.add(Map.entry(patient, distance));
+            }
+        }
+        return best.stream()
+                .sorted(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static Patient patient(long id, double latitude, double longitude) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setLatitude(latitude);
+        patient.setLongitude(longitude);
+        patient.setStatus(Status.ACTIVE);
+        patient.setAlivestatus(AliveStatus.yes);
+        return patient;
+    }
+}
@@ -0,0 +1,155 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ProcedureFrequencyDto;
+import com.erfan.cch.Dto.VisitReportRequest;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.ProcedureDone;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.ProcedureRepository;
+import com.erfan.cch.TestFixtures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class ProcedureUsageRollupTests {
+
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private VisitCompletionService visitCompletionService;
+    @Autowired
+    private ProcedureUsageRollup procedureUsageRollup;
+    @Autowired
+    private ProcedureRepository procedureRepository;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ProcedureDone dressing;
+    private ProcedureDone painReview;
+    private Volunteer alice;
+    private Volunteer bob;
+
+    @BeforeEach
+    void setUp() {
+        dressing = newProcedure("Dressing");
+        painReview = newProcedure("Pain review");
+        alice = fixtures.namedVolunteer("Alice " + UUID.randomUUID());
+        bob = fixtures.namedVolunteer("Bob " + UUID.randomUUID());
+    }
+
+    @Test
+    void submissionsAreCountedPerVolunteerAndResubmissionReplacesProcedures() {
+        LocalDate today = LocalDate.now();
+        PatientVisitReport first = fixtures.visit(null, alice, today, Status.PENDING);
+        PatientVisitReport second = fixtures.visit(null, alice, today, Status.PENDING);
+        PatientVisitReport third = fixtures.visit(null, bob, today, Status.PENDING);
+
+        adminService.submitVisitReport(first.getId(), List.of(dressing.getId(), painReview.getId()), List.of(),
+                Status.COMPLETED, "done");
+        visitCompletionService.completeBatch(List.of(
+                request(second, Status.COMPLETED, dressing),
+                request(third, Status.COMPLETED, dressing),
+                request(fixtures.visit(null, bob, today, Status.PENDING), Status.FAILED, painReview)));
+
+        assertEquals(Map.of(dressing.getId(), 3L, painReview.getId(), 1L), totals(today, today));
+        Map<String, Long> perVolunteer = new HashMap<>();
+        for (ProcedureFrequencyDto row : adminService.getProcedureFrequency(today, today, false, true)) {
+            if (row.getProcedureId().equals(dressing.getId())) {
+                perVolunteer.put(row.getVolunteerName(), row.getVisits());
+            }
+        }
+        assertEquals(Map.of(alice.getName(), 2L, bob.getName(), 1L), perVolunteer);
+
+        // The first report is corrected: pain review only
+        adminService.submitVisitReport(first.getId(), List.of(painReview.getId()), List.of(), Status.COMPLETED, "fixed");
+        assertEquals(Map.of(dressing.getId(), 2L, painReview.getId(), 1L), totals(today, today));
+        assertEquals(joinedCounts(today), totals(today, today));
+    }
+
+    @Test
+    void rebuildBackfillsEarlierVisitsOnTheirMonth() {
+        LocalDate lastMonth = LocalDate.now().withDayOfMonth(1).minusMonths(1);
+        PatientVisitReport earlier = fixtures.visit(null, alice, lastMonth, Status.PENDING);
+        jdbcTemplate.update("UPDATE patient_visit_report SET status = ?, completed_date = ? WHERE id = ?",
+                Status.COMPLETED.ordinal(), lastMonth.plusDays(4), earlier.getId());
+        jdbcTemplate.update("INSERT INTO visit_procedure (visit_id, procedure_id) VALUES (?, ?)",
+                earlier.getId(), dressing.getId());
+        assertEquals(Map.of(), totals(lastMonth, lastMonth.plusMonths(1).minusDays(1)));
+
+        procedureUsageRollup.rebuild();
+
+        assertEquals(Map.of(dressing.getId(), 1L), totals(lastMonth, lastMonth.plusMonths(1).minusDays(1)));
+        ProcedureFrequencyDto monthly = adminService.getProcedureFrequency(lastMonth, LocalDate.now(), true, false)
+                .stream()
+                .filter(row -> row.getProcedureId().equals(dressing.getId()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(lastMonth, monthly.getMonth());
+        assertEquals(1L, monthly.getVisits());
+    }
+
+    @Test
+    void invalidRangeIsRejected() {
+        LocalDate today = LocalDate.now();
+        assertThrows(IllegalArgumentException.class,
+                () -> adminService.getProcedureFrequency(today, today.minusDays(1), false, false));
+    }
+
+    private Map<Long, Long> totals(LocalDate start, LocalDate end) {
+        Map<Long, Long> totals = new HashMap<>();
+        for (ProcedureFrequencyDto row : adminService.getProcedureFrequency(start, end, false, false)) {
+            if (row.getProcedureId().equals(dressing.getId()) || row.getProcedureId().equals(painReview.getId())) {
+                totals.put(row.getProcedureId(), row.getVisits());
+            }
+        }
+        return totals;
+    }
+
+    // The count straight from visit_procedure, which is what the rollup has to agree with
+    private Map<Long, Long> joinedCounts(LocalDate day) {
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT vp.procedure_id, COUNT(*)
+                        FROM visit_procedure vp JOIN patient_visit_report v ON v.id = vp.visit_id
+                        WHERE v.status = ? AND v.completed_date = ? AND vp.procedure_id IN (?, ?)
+                        GROUP BY vp.procedure_id
+                        """,
+                rs -> {
+                    counts.put(rs.getLong(1), rs.getLong(2));
+                },
+                Status.COMPLETED.ordinal(), day, dressing.getId(), painReview.getId());
+        return counts;
+    }
+
+    private static VisitReportRequest request(PatientVisitReport visit, Status status, ProcedureDone... procedures) {
+        VisitReportRequest request = new VisitReportRequest();
+        request.setVisitId(visit.getId());
+        request.setStatus(status);
+        request.setProcedureIds(Arrays.stream(procedures).map(ProcedureDone::getId).toList());
+        return request;
+    }
+
+    private ProcedureDone newProcedure(String name) {
+        ProcedureDone procedure = new ProcedureDone();
+        procedure.setName(name + " " + UUID.randomUUID());
+        procedure.setStatus(Status.ACTIVE);
+        return procedureRepository.save(procedure);
+    }
+}
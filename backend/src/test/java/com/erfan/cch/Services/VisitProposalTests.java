@@ -0,0 +1,131 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.VisitProposalDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class VisitProposalTests {
+
+    @Autowired
+    private VisitProposalService visitProposalService;
+    @Autowired
+    private PatientSpatialIndex patientSpatialIndex;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void pendingVisitGoesToTheVolunteerAlreadyWorkingNearby() {
+        // A date and area no other test touches
+        LocalDate date = LocalDate.now().plusYears(3);
+        Volunteer nearby = fixtures.volunteer("Nurse");
+        Volunteer faraway = fixtures.volunteer("Nurse");
+        fixtures.visit(newPatient(-41.2860, 174.7760), nearby, date, Status.COMPLETED);
+        fixtures.visit(newPatient(-41.4500, 174.9500), faraway, date, Status.PENDING);
+        PatientVisitReport misplaced = fixtures.visit(newPatient(-41.2900, 174.7800), faraway, date, Status.PENDING);
+
+        VisitProposalDto proposal = visitProposalService.proposeForDate(date).stream()
+                .filter(p -> p.getVisitId().equals(misplaced.getId()))
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals(faraway.getId(), proposal.getCurrentVolunteerId());
+        assertEquals(nearby.getId(), proposal.getProposedVolunteerId());
+        assertTrue(proposal.getDistanceKm() < 1, "closest stop was " + proposal.getDistanceKm() + " km");
+        assertEquals(2, proposal.getDailyLoad());
+    }
+
+    @Test
+    void busyVolunteerLosesToAnIdleOneWhenTheDetourIsShort() {
+        LocalDate date = LocalDate.now().plusYears(3).plusDays(1);
+        Volunteer busy = fixtures.volunteer("Nurse");
+        Volunteer lighter = fixtures.volunteer("Nurse");
+        for (int i = 0; i < 6; i++) {
+            fixtures.visit(newPatient(-45.8700 + i * 0.0001, 170.5000), busy, date, Status.COMPLETED);
+        }
+        fixtures.visit(newPatient(-45.8800, 170.5000), lighter, date, Status.PENDING);
+        PatientVisitReport extra = fixtures.visit(newPatient(-45.8710, 170.5000), busy, date, Status.PENDING);
+
+        List<VisitProposalDto> proposals = visitProposalService.proposeForDate(date);
+        VisitProposalDto proposal = proposals.stream()
+                .filter(p -> p.getVisitId().equals(extra.getId()))
+                .findFirst()
+                .orElseThrow();
+
+        // ~1 km further for the lighter volunteer beats six visits' worth of load
+        assertEquals(lighter.getId(), proposal.getProposedVolunteerId());
+    }
+
+    @Test
+    void laterVisitsSeeAnEarlierVisitAtItsProposedVolunteer() {
+        LocalDate date = LocalDate.now().plusYears(3).plusDays(2);
+        Volunteer nearby = fixtures.volunteer("Nurse");
+        Volunteer faraway = fixtures.volunteer("Nurse");
+        // Three patients in a row about 0.3 km apart
+        fixtures.visit(newPatient(-39.0000, 176.0000), nearby, date, Status.COMPLETED);
+        PatientVisitReport moved = fixtures.visit(newPatient(-39.0027, 176.0000), faraway, date, Status.PENDING);
+        PatientVisitReport unassigned = fixtures.visit(newPatient(-39.0054, 176.0000), null, date, Status.PENDING);
+
+        List<VisitProposalDto> proposals = visitProposalService.proposeForDate(date);
+        VisitProposalDto first = proposals.stream()
+                .filter(p -> p.getVisitId().equals(moved.getId()))
+                .findFirst()
+                .orElseThrow();
+        VisitProposalDto second = proposals.stream()
+                .filter(p -> p.getVisitId().equals(unassigned.getId()))
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals(nearby.getId(), first.getProposedVolunteerId());
+        // The middle patient now counts as the nearby volunteer's stop, not the faraway one's
+        assertEquals(nearby.getId(), second.getProposedVolunteerId());
+        assertEquals(0.3, second.getDistanceKm(), 0.05);
+        assertEquals(3, second.getDailyLoad());
+    }
+
+    @Test
+    void rolledBackPatientUpdateLeavesTheIndexAlone() {
+        Patient patient = newPatient(-43.5320, 172.6360);
+        Patient moved = new Patient();
+        moved.setName(patient.getName());
+        moved.setMobileNumber(patient.getMobileNumber());
+        moved.setLatitude(-43.6000);
+        moved.setLongitude(172.7000);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            adminService.updatePatient(patient.getId(), moved);
+            status.setRollbackOnly();
+        });
+        assertEquals(-43.5320, patientSpatialIndex.nearest(-43.5320, 172.6360, 1).get(0).latitude());
+
+        adminService.updatePatient(patient.getId(), moved);
+        PatientSpatialIndex.Neighbor nearest = patientSpatialIndex.nearest(-43.6000, 172.7000, 1).get(0);
+        assertEquals(patient.getId(), nearest.patientId());
+        assertEquals(0, nearest.distanceKm(), 1e-9);
+    }
+
+    private Patient newPatient(double latitude, double longitude) {
+        Patient patient = fixtures.patient(latitude, longitude);
+        patientSpatialIndex.update(patient);
+        return patient;
+    }
+}
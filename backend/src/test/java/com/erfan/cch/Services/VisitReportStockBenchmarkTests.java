@@ -0,0 +1,100 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Microbenchmark;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.VisitConsumableUsage;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The stock half of a visit report with 20 consumables: the old per-item findById and
+ * saveAndFlush loop against the one read and batched update {@link ConsumableStockService}
+ * does now. Runs on H2, which has no network round trips, so MySQL gains more.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+@EnabledIfSystemProperty(named = Microbenchmark.ENABLED_PROPERTY, matches = "true")
+class VisitReportStockBenchmarkTests {
+
+    private static final int CONSUMABLES_PER_REPORT = 20;
+
+    @Autowired
+    private ConsumableStockService consumableStockService;
+    @Autowired
+    private ConsumableRepository consumableRepository;
+    @Autowired
+    private PatientVisitReportRepository reportRepository;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void batchedDeductionBeatsThePerItemLoop() {
+        List<ConsumableUsageDto> usage = new ArrayList<>();
+        for (int i = 0; i < CONSUMABLES_PER_REPORT; i++) {
+            Consumable consumable = consumableRepository.save(
+                    new Consumable("Bench " + i, "Test", 1_000_000, "pieces", Status.ACTIVE));
+            ConsumableUsageDto dto = new ConsumableUsageDto();
+            dto.setConsumableId(consumable.getId());
+            dto.setQuantity(1);
+            usage.add(dto);
+        }
+        Long loopVisit = fixtures.visit(null, null, LocalDate.now(), Status.PENDING).getId();
+        Long batchedVisit = fixtures.visit(null, null, LocalDate.now(), Status.PENDING).getId();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        double before = Microbenchmark.nanosPerOp("stock, per-item loop", 5, 50,
+                () -> transaction.execute(status -> perItemLoop(loopVisit, usage)));
+        double after = Microbenchmark.nanosPerOp("stock, batched", 5, 50,
+                () -> transaction.execute(status -> batched(batchedVisit, usage)));
+
+        assertTrue(after < before, "batched took " + after + " ns, the loop took " + before + " ns");
+    }
+
+    // What both submitVisitReport methods did before: a read and a flushed write per consumable
+    private PatientVisitReport perItemLoop(Long visitId, List<ConsumableUsageDto> usage) {
+        PatientVisitReport report = reportRepository.findById(visitId).orElseThrow();
+        report.getConsumablesUsed().clear();
+        for (ConsumableUsageDto usageDto : usage) {
+            Consumable consumable = consumableRepository.findById(usageDto.getConsumableId()).orElseThrow();
+            if (consumable.getStockQuantity() < usageDto.getQuantity()) {
+                throw new RuntimeException("Not enough stock for consumable: " + consumable.getName());
+            }
+            consumable.setStockQuantity(consumable.getStockQuantity() - usageDto.getQuantity());
+            consumableRepository.saveAndFlush(consumable);
+            report.getConsumablesUsed().add(new VisitConsumableUsage(report, consumable, usageDto.getQuantity()));
+        }
+        return reportRepository.saveAndFlush(report);
+    }
+
+    // The same steps VisitCompletionService takes for a single report
+    private Map<Long, Integer> batched(Long visitId, List<ConsumableUsageDto> usage) {
+        Map<Long, Integer> quantities = consumableStockService.aggregate(usage);
+        // Drop the stored usage first so every run deducts the full report, like the loop does
+        consumableStockService.replaceUsage(visitId, Map.of());
+        Map<Long, Integer> previousUsage = consumableStockService.usages(List.of(visitId))
+                .getOrDefault(visitId, Map.of());
+        consumableStockService.deduct(ConsumableStockService.change(quantities, previousUsage));
+        consumableStockService.replaceUsage(visitId, quantities);
+        return quantities;
+    }
+}
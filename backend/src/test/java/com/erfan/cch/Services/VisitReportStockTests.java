@@ -0,0 +1,116 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class VisitReportStockTests {
+
+    private static final int CONSUMABLES_PER_REPORT = 20;
+
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private ConsumableRepository consumableRepository;
+    @Autowired
+    private PatientVisitReportRepository reportRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Consumable> consumables;
+
+    @BeforeEach
+    void setUp() {
+        consumables = new ArrayList<>();
+        for (int i = 0; i < CONSUMABLES_PER_REPORT; i++) {
+            consumables.add(consumableRepository.save(new Consumable("Item " + i, "Test", 1_000, "pieces", Status.ACTIVE)));
+        }
+    }
+
+    @Test
+    void reportWithTwentyConsumablesDeductsStockAndRecordsUsage() {
+        PatientVisitReport visit = newVisit();
+        List<ConsumableUsageDto> usage = usageOf(2);
+
+        adminService.submitVisitReport(visit.getId(), List.of(), usage, Status.COMPLETED, "done");
+
+        for (Consumable consumable : consumables) {
+            assertEquals(998, consumableRepository.findById(consumable.getId()).orElseThrow().getStockQuantity());
+        }
+        assertEquals(CONSUMABLES_PER_REPORT, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM visit_consumable_usage WHERE visit_report_id = ?", Integer.class, visit.getId()));
+    }
+
+    @Test
+    void resubmissionTakesOnlyTheDifferenceFromStock() {
+        PatientVisitReport visit = newVisit();
+        adminService.submitVisitReport(visit.getId(), List.of(), usageOf(2), Status.COMPLETED, "done");
+        adminService.submitVisitReport(visit.getId(), List.of(), usageOf(2), Status.COMPLETED, "same again");
+        assertStock(998);
+
+        adminService.submitVisitReport(visit.getId(), List.of(), usageOf(5), Status.COMPLETED, "used more");
+        assertStock(995);
+
+        adminService.submitVisitReport(visit.getId(), List.of(), usageOf(1), Status.CANCELLED, "mostly unused");
+        assertStock(999);
+        assertEquals(CONSUMABLES_PER_REPORT, jdbcTemplate.queryForObject(
+                "SELECT SUM(quantity_used) FROM visit_consumable_usage WHERE visit_report_id = ?", Integer.class,
+                visit.getId()));
+    }
+
+    @Test
+    void insufficientStockForOneItemRollsBackTheWholeReport() {
+        PatientVisitReport visit = newVisit();
+        List<ConsumableUsageDto> usage = usageOf(1);
+        usage.get(CONSUMABLES_PER_REPORT - 1).setQuantity(5_000);
+
+        assertThrows(RuntimeException.class,
+                () -> adminService.submitVisitReport(visit.getId(), List.of(), usage, Status.COMPLETED, "done"));
+
+        for (Consumable consumable : consumables) {
+            assertEquals(1_000, consumableRepository.findById(consumable.getId()).orElseThrow().getStockQuantity());
+        }
+        assertEquals(Status.PENDING, reportRepository.findById(visit.getId()).orElseThrow().getStatus());
+    }
+
+    private void assertStock(int expected) {
+        for (Consumable consumable : consumables) {
+            assertEquals(expected, consumableRepository.findById(consumable.getId()).orElseThrow().getStockQuantity());
+        }
+    }
+
+    private PatientVisitReport newVisit() {
+        PatientVisitReport visit = new PatientVisitReport();
+        visit.setVisitDate(LocalDate.now());
+        visit.setStatus(Status.PENDING);
+        return reportRepository.save(visit);
+    }
+
+    private List<ConsumableUsageDto> usageOf(int quantity) {
+        List<ConsumableUsageDto> usage = new ArrayList<>();
+        for (Consumable consumable : consumables) {
+            ConsumableUsageDto dto = new ConsumableUsageDto();
+            dto.setConsumableId(consumable.getId());
+            dto.setQuantity(quantity);
+            usage.add(dto);
+        }
+        return usage;
+    }
+}
@@ -0,0 +1,59 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.PatientVisitReportDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitRouteServiceTests {
+
+    private final VisitRouteService visitRouteService = new VisitRouteService();
+    private final LocalDate today = LocalDate.now();
+
+    @Test
+    void stopsAlongALineAreVisitedInLineOrderAndUnlocatedOnesGoLast() {
+        List<PatientVisitReportDto> visits = new ArrayList<>(List.of(
+                visit(1L, 11.30, 75.80), visit(2L, null, null), visit(3L, 11.10, 75.80),
+                visit(4L, 11.20, 75.80), visit(5L, 11.40, 75.80)));
+        Collections.shuffle(visits);
+
+        List<Long> ids = ids(visitRouteService.route(7L, today, visits, 11.05, 75.80));
+
+        assertEquals(List.of(3L, 4L, 1L, 5L, 2L), ids);
+    }
+
+    @Test
+    void cachedRouteIsReusedUntilTheStopsOrStartChange() {
+        List<PatientVisitReportDto> visits = List.of(
+                visit(1L, 11.30, 75.80), visit(2L, 11.10, 75.80), visit(3L, 11.20, 75.80));
+        assertEquals(List.of(2L, 3L, 1L), ids(visitRouteService.route(8L, today, visits, 11.0, 75.8)));
+
+        // Same stops, start moved a few metres: the cached order is kept even if it's now marginally worse
+        assertEquals(List.of(2L, 3L, 1L), ids(visitRouteService.route(8L, today, visits, 11.0004, 75.8)));
+
+        // Starting from the other end reverses the route
+        assertEquals(List.of(1L, 3L, 2L), ids(visitRouteService.route(8L, today, visits, 11.5, 75.8)));
+
+        // A stop moving past the others changes the fingerprint
+        List<PatientVisitReportDto> moved = List.of(
+                visit(1L, 11.30, 75.80), visit(2L, 11.45, 75.80), visit(3L, 11.20, 75.80));
+        assertEquals(List.of(2L, 1L, 3L), ids(visitRouteService.route(8L, today, moved, 11.5, 75.8)));
+    }
+
+    private static List<Long> ids(List<PatientVisitReportDto> visits) {
+        return visits.stream().map(PatientVisitReportDto::getId).toList();
+    }
+
+    private static PatientVisitReportDto visit(Long id, Double latitude, Double longitude) {
+        PatientVisitReportDto visit = new PatientVisitReportDto();
+        visit.setId(id);
+        visit.setLatitude(latitude);
+        visit.setLongitude(longitude);
+        return visit;
+    }
+}
@@ -0,0 +1,191 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.ConsumableUsageDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.Models.ProcedureDone;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.ProcedureRepository;
+import com.erfan.cch.Security.AuthenticatedPrincipal;
+import com.erfan.cch.TestFixtures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Its own database: the statement counter wraps the DataSource, which needs a context of its own
+@SpringBootTest(properties =
+        "spring.datasource.url=jdbc:h2:mem:cch-entry-points;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("h2")
+class VisitSubmissionEntryPointsTests {
+
+    // Statements executed through the DataSource, JPA and JdbcTemplate alike; a batch counts once
+    private static final AtomicLong statements = new AtomicLong();
+
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private VolunteerService volunteerService;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private ProcedureRepository procedureRepository;
+    @Autowired
+    private ConsumableRepository consumableRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Volunteer volunteer;
+
+    @BeforeEach
+    void setUp() {
+        volunteer = fixtures.volunteer();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, new AuthenticatedPrincipal(
+                volunteer.getId(), volunteer.getEmail(), volunteer.getName(), UserType.VOLUNTEER));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void adminAndVolunteerSubmissionsStoreTheSameReportWithTheSameStatements() {
+        List<Long> procedureIds = new ArrayList<>();
+        List<ConsumableUsageDto> usage = new ArrayList<>();
+        List<Long> consumableIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ProcedureDone procedure = new ProcedureDone();
+            procedure.setName("Entry point " + UUID.randomUUID());
+            procedure.setStatus(Status.ACTIVE);
+            procedureIds.add(procedureRepository.save(procedure).getId());
+            Consumable consumable = consumableRepository.save(
+                    new Consumable("Entry point " + i, "Test", 100, "pieces", Status.ACTIVE));
+            consumableIds.add(consumable.getId());
+            ConsumableUsageDto dto = new ConsumableUsageDto();
+            dto.setConsumableId(consumable.getId());
+            dto.setQuantity(i + 1);
+            usage.add(dto);
+        }
+        Patient patient = fixtures.patient();
+        Long adminVisit = fixtures.visit(patient, volunteer, LocalDate.now(), Status.PENDING).getId();
+        Long volunteerVisit = fixtures.visit(patient, volunteer, LocalDate.now(), Status.PENDING).getId();
+        Long smallVisit = fixtures.visit(patient, volunteer, LocalDate.now(), Status.PENDING).getId();
+
+        long adminStatements = statementsOf(
+                () -> adminService.submitVisitReport(adminVisit, procedureIds, usage, Status.COMPLETED, "done"));
+        long volunteerStatements = statementsOf(
+                () -> volunteerService.submitVisitReport(volunteerVisit, procedureIds, usage, Status.COMPLETED, "done"));
+
+        assertEquals(stored(adminVisit), stored(volunteerVisit));
+        assertEquals(Map.of(consumableIds.get(0), 1, consumableIds.get(1), 2, consumableIds.get(2), 3),
+                usageOf(volunteerVisit));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(100 - 2 * (i + 1), consumableRepository.findById(consumableIds.get(i)).orElseThrow()
+                    .getStockQuantity());
+        }
+        assertTrue(adminStatements > 0, "the counter saw no statements");
+        assertEquals(adminStatements, volunteerStatements);
+
+        long smallStatements = statementsOf(() -> volunteerService.submitVisitReport(smallVisit,
+                procedureIds.subList(0, 1), usage.subList(0, 1), Status.COMPLETED, "done"));
+        // Set-based reads and batched writes: three procedures and consumables cost what one does
+        assertEquals(smallStatements, volunteerStatements);
+    }
+
+    private static long statementsOf(Runnable submission) {
+        long before = statements.get();
+        submission.run();
+        return statements.get() - before;
+    }
+
+    // Everything a submission writes for a visit, without its id
+    private List<Object> stored(Long visitId) {
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT status, completed_date, notes, submitted_by FROM patient_visit_report WHERE id = ?", visitId);
+        List<Long> procedures = jdbcTemplate.queryForList(
+                "SELECT procedure_id FROM visit_procedure WHERE visit_id = ? ORDER BY procedure_id", Long.class, visitId);
+        return List.of(row, procedures, usageOf(visitId));
+    }
+
+    private Map<Long, Integer> usageOf(Long visitId) {
+        Map<Long, Integer> usage = new TreeMap<>();
+        jdbcTemplate.query("SELECT consumable_id, quantity_used FROM visit_consumable_usage WHERE visit_report_id = ?",
+                rs -> {
+                    usage.put(rs.getLong(1), rs.getInt(2));
+                }, visitId);
+        return usage;
+    }
+
+    @TestConfiguration
+    static class StatementCounting {
+
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return proxy(Connection.class, super.getConnection());
+                        }
+                    } : bean;
+                }
+            };
+        }
+
+        // Wraps connections so the statements they create count their executions
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Object target) {
+            InvocationHandler handler = (proxy, method, args) -> {
+                if (method.getName().startsWith("execute")) {
+                    statements.incrementAndGet();
+                }
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                Class<?> returned = method.getReturnType();
+                return result != null && Statement.class.isAssignableFrom(returned)
+                        ? proxy(returned, result)
+                        : result;
+            };
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.VolunteerDashboardStatsDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.Security.AuthenticatedPrincipal;
+import com.erfan.cch.TestFixtures;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class VolunteerDashboardCountersTests {
+
+    @Autowired
+    private VolunteerService volunteerService;
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private VisitCompletionService visitCompletionService;
+    @Autowired
+    private VolunteerDashboardCounters volunteerDashboardCounters;
+    @Autowired
+    private TestFixtures fixtures;
+    @Autowired
+    private PatientVisitReportRepository reportRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Volunteer volunteer;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        volunteer = fixtures.volunteer();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, new AuthenticatedPrincipal(
+                volunteer.getId(), volunteer.getEmail(), volunteer.getName(), UserType.VOLUNTEER));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void assignmentAndSubmissionUpdateTheDashboardWithoutQueries() {
+        LocalDate today = LocalDate.now();
+        adminService.assignVolunteerToPatients(volunteer.getId(), List.of(fixtures.patient().getId(), fixtures.patient().getId()),
+                List.of(today, today.plusDays(1)));
+
+        statistics.clear();
+        VolunteerDashboardStatsDto stats = volunteerService.getDashboardStats();
+        assertEquals(0, statistics.getPrepareStatementCount(), "the dashboard must not touch the database");
+        assertEquals(2, stats.getTodayVisits());
+        assertEquals(0, stats.getCompletedVisits());
+
+        Long visitId = reportRepository.findByVolunteerIdAndVisitDate(volunteer.getId(), today).get(0).getId();
+        visitCompletionService.complete(visitId, List.of(), List.of(), Status.COMPLETED, null);
+        visitCompletionService.complete(visitId, List.of(), List.of(), Status.COMPLETED, null);
+        assertEquals(1, volunteerService.getDashboardStats().getCompletedVisits());
+
+        visitCompletionService.complete(visitId, List.of(), List.of(), Status.CANCELLED, "patient not home");
+        stats = volunteerService.getDashboardStats();
+        assertEquals(0, stats.getCompletedVisits());
+        assertEquals(2, stats.getTodayVisits());
+    }
+
+    @Test
+    void reconcilePicksUpRowsWrittenBehindItsBack() {
+        fixtures.visit(fixtures.patient(), volunteer, LocalDate.now(), Status.COMPLETED);
+        assertEquals(0, volunteerService.getDashboardStats().getTodayVisits());
+
+        volunteerDashboardCounters.reconcile();
+
+        VolunteerDashboardStatsDto stats = volunteerService.getDashboardStats();
+        assertEquals(1, stats.getTodayVisits());
+        assertEquals(1, stats.getCompletedVisits());
+    }
+}
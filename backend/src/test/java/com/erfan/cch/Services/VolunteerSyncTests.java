@@ -0,0 +1,153 @@
+package com.erfan.cch.Services;
+
+import com.erfan.cch.Dto.PatientLocationDto;
+import com.erfan.cch.Dto.PatientVisitReportDto;
+import com.erfan.cch.Dto.VolunteerSyncDto;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Models.Consumable;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.ConsumableRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.Security.AuthenticatedPrincipal;
+import com.erfan.cch.TestFixtures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "cch.sync.cursor-lag-ms=0")
+@ActiveProfiles("h2")
+class VolunteerSyncTests {
+
+    @Autowired
+    private VolunteerSyncService volunteerSyncService;
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private ConsumableRepository consumableRepository;
+    @Autowired
+    private PatientVisitReportRepository reportRepository;
+    @Autowired
+    private PatientService patientService;
+    @Autowired
+    private TestFixtures fixtures;
+
+    private Volunteer volunteer;
+
+    @BeforeEach
+    void setUp() {
+        volunteer = fixtures.volunteer();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(AuthenticatedPrincipal.REQUEST_ATTRIBUTE, new AuthenticatedPrincipal(
+                volunteer.getId(), volunteer.getEmail(), volunteer.getName(), UserType.VOLUNTEER));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void cursorReturnsOnlyRowsChangedSinceTheLastSync() throws Exception {
+        Consumable restocked = consumableRepository.save(new Consumable("Bandage", "First Aid", 10, "rolls", Status.ACTIVE));
+        Consumable retired = consumableRepository.save(new Consumable("Old Kit", "First Aid", 10, "box", Status.ACTIVE));
+        Consumable untouched = consumableRepository.save(new Consumable("Mask", "Hygiene", 10, "pieces", Status.ACTIVE));
+        PatientVisitReport changedVisit = newVisit();
+        PatientVisitReport unchangedVisit = newVisit();
+        awaitMillisecondAfter(unchangedVisit.getUpdatedAt());
+
+        VolunteerSyncDto full = volunteerSyncService.changesSince(null);
+        assertTrue(full.getConsumables().stream().anyMatch(c -> c.getId().equals(untouched.getId())));
+        assertTrue(visitIds(full.getVisits()).containsAll(List.of(changedVisit.getId(), unchangedVisit.getId())));
+
+        awaitMillisecondAfter(Instant.ofEpochMilli(Long.parseLong(full.getCursor())));
+        adminService.updateStock(restocked.getId(), 5, true);
+        adminService.deleteConsumable(retired.getId());
+        adminService.submitVisitReport(changedVisit.getId(), List.of(), List.of(), Status.COMPLETED, "done");
+
+        VolunteerSyncDto delta = volunteerSyncService.changesSince(full.getCursor());
+        assertEquals(List.of(restocked.getId()), delta.getConsumables().stream().map(Consumable::getId).toList());
+        assertEquals(List.of(retired.getId()), delta.getRemovedConsumableIds());
+        assertEquals(List.of(changedVisit.getId()), visitIds(delta.getVisits()));
+        assertTrue(delta.getProcedures().isEmpty());
+        assertTrue(delta.getRemovedVisitIds().isEmpty());
+    }
+
+    @Test
+    void visitsRedatedBeforeTodayAreReportedAsRemoved() throws Exception {
+        PatientVisitReport redated = newVisit();
+        PatientVisitReport kept = newVisit();
+        awaitMillisecondAfter(kept.getUpdatedAt());
+        VolunteerSyncDto full = volunteerSyncService.changesSince(null);
+
+        awaitMillisecondAfter(Instant.ofEpochMilli(Long.parseLong(full.getCursor())));
+        PatientVisitReport earlier = reportRepository.findById(redated.getId()).orElseThrow();
+        earlier.setVisitDate(LocalDate.now().minusDays(1));
+        reportRepository.save(earlier);
+
+        VolunteerSyncDto delta = volunteerSyncService.changesSince(full.getCursor());
+        assertTrue(delta.getVisits().isEmpty());
+        assertEquals(List.of(redated.getId()), delta.getRemovedVisitIds());
+    }
+
+    @Test
+    void visitsAreResentWhenTheirPatientMoves() throws Exception {
+        Patient patient = fixtures.patient(11.25, 75.78);
+        PatientVisitReport visit = newVisit();
+        PatientVisitReport withPatient = reportRepository.findById(visit.getId()).orElseThrow();
+        withPatient.setPatient(patient);
+        withPatient = reportRepository.save(withPatient);
+        PatientVisitReport other = newVisit();
+        awaitMillisecondAfter(other.getUpdatedAt());
+        VolunteerSyncDto full = volunteerSyncService.changesSince(null);
+
+        awaitMillisecondAfter(Instant.ofEpochMilli(Long.parseLong(full.getCursor())));
+        PatientLocationDto location = new PatientLocationDto();
+        location.setLatitude(11.31);
+        location.setLongitude(75.84);
+        location.setAddress("New address");
+        patientService.updateLocation(patient.getId(), location);
+
+        VolunteerSyncDto delta = volunteerSyncService.changesSince(full.getCursor());
+        assertEquals(List.of(withPatient.getId()), visitIds(delta.getVisits()));
+        assertEquals(11.31, delta.getVisits().get(0).getLatitude());
+        assertEquals(75.84, delta.getVisits().get(0).getLongitude());
+    }
+
+    private PatientVisitReport newVisit() {
+        PatientVisitReport visit = new PatientVisitReport();
+        visit.setVisitCode("SYNC-" + UUID.randomUUID());
+        visit.setVolunteer(volunteer);
+        visit.setVisitDate(LocalDate.now());
+        visit.setStatus(Status.PENDING);
+        return reportRepository.save(visit);
+    }
+
+    // The cursor only has millisecond precision, so a row stamped in the same millisecond as a
+    // sync read would land on either side of it; step the clock past the stamp instead
+    private static void awaitMillisecondAfter(Instant stamp) throws InterruptedException {
+        while (Instant.now().toEpochMilli() <= stamp.toEpochMilli()) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static List<Long> visitIds(List<PatientVisitReportDto> visits) {
+        return visits.stream().map(PatientVisitReportDto::getId).toList();
+    }
+}
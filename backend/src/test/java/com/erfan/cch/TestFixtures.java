@@ -0,0 +1,90 @@
+package com.erfan.cch;
+
+import com.erfan.cch.Enums.AliveStatus;
+import com.erfan.cch.Enums.Status;
+import com.erfan.cch.Enums.UserType;
+import com.erfan.cch.Models.Patient;
+import com.erfan.cch.Models.PatientVisitReport;
+import com.erfan.cch.Models.Volunteer;
+import com.erfan.cch.Repo.PatientRepository;
+import com.erfan.cch.Repo.PatientVisitReportRepository;
+import com.erfan.cch.Repo.VolunteerRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Saved volunteers, patients and visits for the service tests. Every row gets a unique email or
+ * mobile number, so tests can share the in-memory database without cleaning up after each other.
+ */
+@Component
+public class TestFixtures {
+
+    private final VolunteerRepository volunteerRepository;
+    private final PatientRepository patientRepository;
+    private final PatientVisitReportRepository reportRepository;
+
+    public TestFixtures(VolunteerRepository volunteerRepository, PatientRepository patientRepository,
+                        PatientVisitReportRepository reportRepository) {
+        this.volunteerRepository = volunteerRepository;
+        this.patientRepository = patientRepository;
+        this.reportRepository = reportRepository;
+    }
+
+    public Volunteer volunteer() {
+        return volunteer(null);
+    }
+
+    public Volunteer volunteer(String specialization) {
+        return volunteerRepository.save(newVolunteer("Test Volunteer", specialization));
+    }
+
+    public Volunteer namedVolunteer(String name) {
+        return volunteerRepository.save(newVolunteer(name, null));
+    }
+
+    public Patient patient() {
+        return patient("Test Patient", AliveStatus.yes);
+    }
+
+    public Patient patient(String name, AliveStatus aliveStatus) {
+        return patientRepository.save(newPatient(name, aliveStatus));
+    }
+
+    public Patient patient(double latitude, double longitude) {
+        Patient patient = newPatient("Test Patient", AliveStatus.yes);
+        patient.setLatitude(latitude);
+        patient.setLongitude(longitude);
+        return patientRepository.save(patient);
+    }
+
+    public PatientVisitReport visit(Patient patient, Volunteer volunteer, LocalDate date, Status status) {
+        PatientVisitReport visit = new PatientVisitReport();
+        visit.setPatient(patient);
+        visit.setVolunteer(volunteer);
+        visit.setVisitDate(date);
+        visit.setStatus(status);
+        return reportRepository.save(visit);
+    }
+
+    private static Volunteer newVolunteer(String name, String specialization) {
+        Volunteer volunteer = new Volunteer();
+        volunteer.setName(name);
+        volunteer.setEmail("volunteer-" + UUID.randomUUID() + "@cch.org");
+        volunteer.setUserType(UserType.VOLUNTEER);
+        volunteer.setStatus(Status.ACTIVE);
+        volunteer.setSpecialization(specialization);
+        return volunteer;
+    }
+
+    private static Patient newPatient(String name, AliveStatus aliveStatus) {
+        Patient patient = new Patient();
+        patient.setName(name);
+        patient.setMobileNumber(UUID.randomUUID().toString().substring(0, 12));
+        patient.setStatus(Status.ACTIVE);
+        patient.setAlivestatus(aliveStatus);
+        patient.setDate(LocalDate.now());
+        return patient;
+    }
+}
@@ -0,0 +1,112 @@
+package com.erfan.cch.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteOptimizerTests {
+
+    private final Random random = new Random(18);
+
+    @Test
+    void routeVisitsEveryStopOnce() {
+        double[][] stops = randomStops(25);
+        int[] route = RouteOptimizer.order(stops[0], stops[1], 11.25, 75.78);
+
+        int[] sorted = route.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            assertEquals(i, sorted[i]);
+        }
+        assertEquals(0, RouteOptimizer.order(new double[0], new double[0], null, null).length);
+        assertArrayEquals(new int[]{0}, RouteOptimizer.order(new double[]{11.2}, new double[]{75.8}, null, null));
+    }
+
+    @Test
+    void routeIsCloseToTheOptimumOnSmallDays() {
+        double worstGap = 0;
+        double totalGap = 0;
+        int days = 200;
+        for (int day = 0; day < days; day++) {
+            double[][] stops = randomStops(8);
+            Double startLat = day % 2 == 0 ? 11.25 : null;
+            Double startLon = day % 2 == 0 ? 75.78 : null;
+            double heuristic = RouteOptimizer.length(
+                    RouteOptimizer.order(stops[0], stops[1], startLat, startLon), stops[0], stops[1], startLat, startLon);
+            double optimum = bruteForce(stops, startLat, startLon);
+            double gap = heuristic / optimum - 1;
+            worstGap = Math.max(worstGap, gap);
+            totalGap += gap;
+        }
+        System.out.printf("8 stops: 2-opt route %.2f%% longer than optimal on average, %.2f%% at worst%n",
+                100 * totalGap / days, 100 * worstGap);
+        assertTrue(totalGap / days < 0.03, "average gap " + totalGap / days);
+        assertTrue(worstGap < 0.25, "worst gap " + worstGap);
+    }
+
+    @Test
+    void routeIsMuchShorterThanAssignmentOrder() {
+        double optimized = 0;
+        double unordered = 0;
+        long nanos = 0;
+        for (int day = 0; day < 200; day++) {
+            double[][] stops = randomStops(30);
+            long start = System.nanoTime();
+            int[] route = RouteOptimizer.order(stops[0], stops[1], 11.25, 75.78);
+            nanos += System.nanoTime() - start;
+            optimized += RouteOptimizer.length(route, stops[0], stops[1], 11.25, 75.78);
+            int[] identity = new int[30];
+            Arrays.setAll(identity, i -> i);
+            unordered += RouteOptimizer.length(identity, stops[0], stops[1], 11.25, 75.78);
+        }
+        System.out.printf("30 stops: %.1f km routed vs %.1f km in assignment order, %.0f us per route%n",
+                optimized / 200, unordered / 200, nanos / 1000.0 / 200);
+        assertTrue(optimized < unordered / 2);
+    }
+
+    // Stops spread over ~20 x 20 km around the hospice
+    private double[][] randomStops(int n) {
+        double[][] stops = new double[2][n];
+        for (int i = 0; i < n; i++) {
+            stops[0][i] = 11.15 + random.nextDouble() * 0.2;
+            stops[1][i] = 75.70 + random.nextDouble() * 0.2;
+        }
+        return stops;
+    }
+
+    private static double bruteForce(double[][] stops, Double startLat, Double startLon) {
+        int[] route = new int[stops[0].length];
+        Arrays.setAll(route, i -> i);
+        double best = Double.MAX_VALUE;
+        do {
+            best = Math.min(best, RouteOptimizer.length(route, stops[0], stops[1], startLat, startLon));
+        } while (nextPermutation(route));
+        return best;
+    }
+
+    private static boolean nextPermutation(int[] a) {
+        int i = a.length - 2;
+        while (i >= 0 && a[i] >= a[i + 1]) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        int j = a.length - 1;
+        while (a[j] <= a[i]) {
+            j--;
+        }
+        int swap = a[i];
+        a[i] = a[j];
+        a[j] = swap;
+        for (int l = i + 1, r = a.length - 1; l < r; l++, r--) {
+            swap = a[l];
+            a[l] = a[r];
+            a[r] = swap;
+        }
+        return true;
+    }
+}
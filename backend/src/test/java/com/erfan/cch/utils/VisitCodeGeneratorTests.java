@@ -0,0 +1,139 @@
+package com.erfan.cch.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitCodeGeneratorTests {
+
+    private static final int THREADS = 8;
+    private static final int CODES_PER_THREAD = 125_000;
+
+    @Test
+    void millionCodesAcrossThreadsAreUniqueAndOrderedPerThread() throws Exception {
+        VisitCodeGenerator generator = new VisitCodeGenerator(7, Clock.systemDefaultZone());
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<String[]>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                String[] codes = new String[CODES_PER_THREAD];
+                for (int i = 0; i < CODES_PER_THREAD; i++) {
+                    codes[i] = generator.next();
+                }
+                return codes;
+            }));
+        }
+        Set<String> all = new HashSet<>(THREADS * CODES_PER_THREAD * 2);
+        for (Future<String[]> future : futures) {
+            String[] codes = future.get();
+            for (int i = 0; i < codes.length; i++) {
+                assertEquals(23, codes[i].length());
+                if (i > 0) {
+                    assertTrue(codes[i].compareTo(codes[i - 1]) > 0, codes[i - 1] + " then " + codes[i]);
+                }
+                all.add(codes[i]);
+            }
+        }
+        pool.shutdown();
+        assertEquals(THREADS * CODES_PER_THREAD, all.size());
+    }
+
+    @Test
+    void nodesNeverCollideOnTheSameMillisecond() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-03-01T10:00:00Z"));
+        VisitCodeGenerator first = new VisitCodeGenerator(1, clock);
+        VisitCodeGenerator second = new VisitCodeGenerator(2, clock);
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(codes.add(first.next()));
+            assertTrue(codes.add(second.next()));
+        }
+    }
+
+    @Test
+    void dateRollsOverAndCodesKeepIncreasingWhenTheClockGoesBack() {
+        MutableClock clock = new MutableClock(
+                LocalDateTime.of(2025, 12, 31, 23, 59, 59, 999_000_000).toInstant(ZoneOffset.UTC));
+        VisitCodeGenerator generator = new VisitCodeGenerator(0, clock);
+
+        String beforeMidnight = generator.next();
+        clock.advance(1);
+        String afterMidnight = generator.next();
+        clock.advance(-5_000);
+        String afterClockStep = generator.next();
+
+        assertTrue(beforeMidnight.startsWith("VIS-20251231-"));
+        assertTrue(afterMidnight.startsWith("VIS-20260101-"));
+        assertTrue(afterClockStep.compareTo(afterMidnight) > 0);
+    }
+
+    @Test
+    void restartContinuesAfterTheLastStoredCode() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-03-01T10:00:00Z"));
+        VisitCodeGenerator before = new VisitCodeGenerator(3, clock);
+        String last = null;
+        // More than a millisecond's worth of codes, so the last ones are borrowed from the future
+        for (int i = 0; i < 10_000; i++) {
+            last = before.next();
+        }
+
+        clock.advance(-2_000);
+        VisitCodeGenerator after = new VisitCodeGenerator(3, clock);
+        assertTrue(after.next().compareTo(last) < 0);
+        assertTrue(after.advancePast(last));
+        assertTrue(after.next().compareTo(last) > 0);
+        assertFalse(after.advancePast("VIS-20250301-12345"));
+    }
+
+    @Test
+    void missingNodeIdFailsStartup() {
+        assertThrows(IllegalStateException.class, () -> new VisitCodeGenerator(""));
+    }
+
+    @Test
+    void nodeIdOutOfRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new VisitCodeGenerator(VisitCodeGenerator.MAX_NODE_ID + 1, Clock.systemUTC()));
+    }
+
+    private static final class MutableClock extends Clock {
+        private final AtomicLong millis;
+
+        MutableClock(Instant start) {
+            this.millis = new AtomicLong(start.toEpochMilli());
+        }
+
+        void advance(long delta) {
+            millis.addAndGet(delta);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis.get());
+        }
+    }
+}